@@ -0,0 +1,63 @@
+package com.jugovicm.DoctorAppointment.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application started against a throwaway embedded PostgreSQL, for benchmarks and checks that
+ * need the real repositories, caches and database.
+ */
+final class EmbeddedApplication implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedApplication(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    /**
+     * Starts PostgreSQL and then the application.
+     *
+     * @param application Builder for the application, e.g. with the web application type set.
+     * @param args Extra command-line arguments, such as {@code --server.port=0}.
+     */
+    static EmbeddedApplication start(SpringApplicationBuilder application, String... args) throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        // Command-line arguments, so they win over application.properties
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--logging.level.root=WARN",
+                // Appointment change events stay in memory instead of a file in the working directory
+                "--outbox.sink=memory"));
+        arguments.addAll(List.of(args));
+        try {
+            return new EmbeddedApplication(postgres, application.run(arguments.toArray(String[]::new)));
+        } catch (RuntimeException e) {
+            postgres.close();
+            throw e;
+        }
+    }
+
+    ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,173 @@
+package com.jugovicm.DoctorAppointment.benchmarks;
+
+import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.AppointmentRow;
+import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.model.Doctor;
+import com.jugovicm.DoctorAppointment.model.Patient;
+import com.jugovicm.DoctorAppointment.repository.PatientRepository;
+import com.jugovicm.DoctorAppointment.search.PatientNameIndex;
+import com.jugovicm.DoctorAppointment.util.SearchText;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic sample data shaped like production rows (names with diacritics, 1-3 doctors per appointment).
+ */
+final class Fixtures {
+
+    static final String[] FIRST_NAMES = {"Milica", "Marko", "Jelena", "Nikola", "Ivana", "Stefan", "Đorđe", "Teodora",
+            "Luka", "Ana", "Miloš", "Jovana", "Petar", "Katarina", "Vuk", "Sanja", "Dušan", "Nataša", "Željko", "Bojana"};
+    static final String[] LAST_NAMES = {"Kovač", "Petrović", "Jovanović", "Nikolić", "Marković", "Đorđević", "Stojanović",
+            "Ilić", "Stanković", "Pavlović", "Milošević", "Popović", "Živković", "Todorović", "Savić", "Rakić", "Isailović",
+            "Lukić", "Vasić", "Mitrović"};
+
+    private Fixtures() {
+    }
+
+    static String firstName(Random random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+    }
+
+    /**
+     * Last names get a numeric-free suffix so that searches match a realistic fraction of rows.
+     */
+    static String lastName(Random random) {
+        return LAST_NAMES[random.nextInt(LAST_NAMES.length)] + (char) ('a' + random.nextInt(26)) + (char) ('a' + random.nextInt(26));
+    }
+
+    /**
+     * Inserts doctors with usernames {@code dr0}, {@code dr1}, ... straight through JDBC.
+     *
+     * @return The IDs in username order.
+     */
+    static List<UUID> insertDoctors(JdbcTemplate jdbcTemplate, Random random, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        List<Object[]> doctors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String firstName = firstName(random);
+            String lastName = lastName(random);
+            ids.add(UUID.randomUUID());
+            doctors.add(new Object[]{ids.get(i), "dr" + i, firstName, lastName, SearchText.normalize(firstName + " " + lastName)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO doctor (id, username, first_name, last_name, search_name) VALUES (?, ?, ?, ?, ?)",
+                doctors);
+        return ids;
+    }
+
+    /**
+     * Inserts patients straight through JDBC. The patient name index does not see them until it is rebuilt.
+     */
+    static List<UUID> insertPatients(JdbcTemplate jdbcTemplate, Random random, int count) {
+        List<UUID> ids = new ArrayList<>(count);
+        List<Object[]> patients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+            patients.add(new Object[]{ids.get(i), firstName(random), lastName(random), firstName(random),
+                    Date.valueOf(LocalDate.of(1940 + random.nextInt(80), 1 + random.nextInt(12), 1 + random.nextInt(28)))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO patient (id, first_name, last_name, middle_name, date_of_birth) VALUES (?, ?, ?, ?, ?)",
+                patients);
+        return ids;
+    }
+
+    /**
+     * Rebuilds the patient name index from the database, e.g. after {@link #insertPatients}.
+     */
+    static void rebuildPatientNameIndex(EmbeddedApplication application) {
+        PatientRepository patientRepository = application.getBean(PatientRepository.class);
+        PatientNameIndex patientNameIndex = application.getBean(PatientNameIndex.class);
+        new TransactionTemplate(application.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            try (Stream<PatientDTO> patients = patientRepository.streamAllAsDTO()) {
+                patientNameIndex.rebuild(patients::iterator);
+            }
+        });
+    }
+
+    static Appointment appointment(Random random, int doctors) {
+        Patient patient = new Patient();
+        patient.setId(new UUID(random.nextLong(), random.nextLong()));
+        patient.setFirstName(firstName(random));
+        patient.setLastName(lastName(random));
+        patient.setMiddleName(firstName(random));
+        patient.setDateOfBirth(LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+
+        List<Doctor> doctorList = new ArrayList<>();
+        for (int i = 0; i < doctors; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setId(new UUID(random.nextLong(), random.nextLong()));
+            doctor.setUsername("dr" + random.nextInt(1_000_000));
+            doctor.setFirstName(firstName(random));
+            doctor.setLastName(lastName(random));
+            doctorList.add(doctor);
+        }
+
+        Appointment appointment = new Appointment();
+        appointment.setId(new UUID(random.nextLong(), random.nextLong()));
+        appointment.setAppointmentTime(LocalDateTime.of(2030, 1, 1, 8, 0).plusMinutes(30L * random.nextInt(20_000)));
+        appointment.setDurationMinutes(30);
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        appointment.setCreatedBy("dr" + random.nextInt(1_000));
+        appointment.setPatient(patient);
+        appointment.setDoctors(doctorList);
+        return appointment;
+    }
+
+    /**
+     * Flat projection rows as returned by the appointment read queries, one per appointment doctor.
+     */
+    static List<AppointmentRow> rows(Random random, int appointments, int doctorsPerAppointment) {
+        List<AppointmentRow> rows = new ArrayList<>();
+        for (int i = 0; i < appointments; i++) {
+            Appointment appointment = appointment(random, doctorsPerAppointment);
+            Patient patient = appointment.getPatient();
+            for (Doctor doctor : appointment.getDoctors()) {
+                rows.add(new AppointmentRow(appointment.getId(), appointment.getAppointmentTime(),
+                        appointment.getDurationMinutes(), appointment.getStatus(), appointment.getCreatedBy(),
+                        patient.getId(), patient.getFirstName(), patient.getLastName(), patient.getMiddleName(),
+                        patient.getDateOfBirth(), doctor.getId(), doctor.getUsername(), doctor.getFirstName(),
+                        doctor.getLastName()));
+            }
+        }
+        return rows;
+    }
+
+    static List<AppointmentResponseDTO> responses(Random random, int appointments, int doctorsPerAppointment) {
+        List<AppointmentResponseDTO> responses = new ArrayList<>(appointments);
+        for (int i = 0; i < appointments; i++) {
+            Appointment appointment = appointment(random, doctorsPerAppointment);
+            AppointmentResponseDTO dto = new AppointmentResponseDTO();
+            dto.setId(appointment.getId());
+            dto.setAppointmentTime(appointment.getAppointmentTime());
+            dto.setDurationMinutes(appointment.getDurationMinutes());
+            dto.setStatus(appointment.getStatus());
+            dto.setCreatedBy(appointment.getCreatedBy());
+            Patient patient = appointment.getPatient();
+            dto.setPatient(new PatientDTO(patient.getId(), patient.getFirstName(), patient.getLastName(),
+                    patient.getMiddleName(), patient.getDateOfBirth()));
+            dto.setDoctors(appointment.getDoctors().stream().map(doctor -> {
+                DoctorDTO doctorDTO = new DoctorDTO();
+                doctorDTO.setId(doctor.getId());
+                doctorDTO.setUsername(doctor.getUsername());
+                doctorDTO.setFirstName(doctor.getFirstName());
+                doctorDTO.setLastName(doctor.getLastName());
+                return doctorDTO;
+            }).toList());
+            responses.add(dto);
+        }
+        return responses;
+    }
+}
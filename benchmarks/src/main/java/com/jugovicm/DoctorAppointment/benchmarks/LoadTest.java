@@ -0,0 +1,333 @@
+package com.jugovicm.DoctorAppointment.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jugovicm.DoctorAppointment.DoctorAppointmentApplication;
+import com.jugovicm.DoctorAppointment.dto.AppointmentRequestDTO;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.service.AppointmentService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a weighted mix of real endpoints against the application on an embedded PostgreSQL and
+ * reports throughput and p50/p99/p99.9 latency per endpoint.
+ *
+ * <p>Each client is a virtual thread running a closed loop: it picks an operation from the mix,
+ * sends it with an {@code X-Username} header, waits for the response and goes again. Requests
+ * that start during the warm-up are not recorded. Options are {@code key=value} arguments (see
+ * {@link #DEFAULTS}); arguments starting with {@code --} are passed to the application, e.g.
+ * {@code --spring.profiles.active=virtual}.</p>
+ *
+ * <pre>mvn package exec:exec@load-test -Dload.args="clients=100 duration=60 mix=book:10,paged:60,search:30"</pre>
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("clients", "50");
+        DEFAULTS.put("duration", "30");  // Seconds measured
+        DEFAULTS.put("warmup", "10");    // Seconds before measuring
+        DEFAULTS.put("mix", "book:15,cancel:5,doctors:20,paged:30,search:30");
+        DEFAULTS.put("doctors", "50");
+        DEFAULTS.put("patients", "50000");
+        DEFAULTS.put("appointments", "5000");
+        DEFAULTS.put("out", "target/load-result.json");
+    }
+
+    // Seeded in the past year and booked in the next one, both inside the window of months that accept appointments
+    private static final LocalDateTime BOOKED_FROM = LocalDate.now().withDayOfMonth(1).atTime(8, 0);
+    private static final LocalDateTime SEEDED_FROM = BOOKED_FROM.minusYears(1);
+    private static final int SLOTS_PER_DAY = 24; // 30-minute slots between 08:00 and 20:00
+    private static final int BATCH_SIZE = 500;
+
+    enum Operation {
+        BOOK("book", "POST /v1/appointment"),
+        CANCEL("cancel", "PUT /v1/appointment/cancel/{id}"),
+        DOCTORS("doctors", "GET /v1/doctor"),
+        PAGED("paged", "GET /v1/appointment/paged"),
+        SEARCH("search", "POST /v1/patient/search");
+
+        private final String key;
+        private final String endpoint;
+
+        Operation(String key, String endpoint) {
+            this.key = key;
+            this.endpoint = endpoint;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation '" + key + "' in mix.");
+        }
+    }
+
+    /**
+     * Latencies in microseconds and outcome counts of one endpoint.
+     */
+    private static final class EndpointStats {
+        final Recorder latency = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+    }
+
+    private record Booking(UUID appointmentId, String username) {
+    }
+
+    private final Map<String, String> options;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final List<UUID> doctors;
+    private final List<UUID> patients;
+    private final Operation[] mix;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final ConcurrentLinkedQueue<Booking> bookings = new ConcurrentLinkedQueue<>();
+    private volatile long measureFrom;
+
+    private LoadTest(Map<String, String> options, ObjectMapper objectMapper, String baseUrl,
+                     List<UUID> doctors, List<UUID> patients) {
+        this.options = options;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.doctors = doctors;
+        this.patients = patients;
+        this.mix = parseMix(options.get("mix"));
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> applicationArgs = new ArrayList<>(List.of("--server.port=0"));
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+            } else if (arg.contains("=") && DEFAULTS.containsKey(arg.substring(0, arg.indexOf('=')))) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown argument '" + arg + "', expected one of " + DEFAULTS.keySet()
+                        + " as key=value or an application argument starting with --.");
+            }
+        }
+
+        try (EmbeddedApplication application = EmbeddedApplication.start(
+                new SpringApplicationBuilder(DoctorAppointmentApplication.class).web(WebApplicationType.SERVLET),
+                applicationArgs.toArray(String[]::new))) {
+            System.out.printf("Seeding %s doctors, %s patients and %s appointments...%n",
+                    options.get("doctors"), options.get("patients"), options.get("appointments"));
+            JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+            Random random = new Random(42);
+            List<UUID> doctors = Fixtures.insertDoctors(jdbcTemplate, random, Integer.parseInt(options.get("doctors")));
+            List<UUID> patients = Fixtures.insertPatients(jdbcTemplate, random, Integer.parseInt(options.get("patients")));
+            seedAppointments(application.getBean(AppointmentService.class), random, doctors, patients,
+                    Integer.parseInt(options.get("appointments")));
+            jdbcTemplate.execute("ANALYZE");
+            Fixtures.rebuildPatientNameIndex(application);
+
+            String baseUrl = "http://localhost:" + application.context().getEnvironment().getProperty("local.server.port");
+            new LoadTest(options, application.getBean(ObjectMapper.class), baseUrl, doctors, patients).run();
+        }
+    }
+
+    /**
+     * Books through the service in batches, so the doctor schedule index sees the appointments.
+     * Slots that happen to collide are rejected by the batch and simply not seeded.
+     */
+    private static void seedAppointments(AppointmentService appointmentService, Random random, List<UUID> doctors,
+                                         List<UUID> patients, int count) {
+        for (int seeded = 0; seeded < count; seeded += BATCH_SIZE) {
+            int doctor = random.nextInt(doctors.size());
+            List<AppointmentRequestDTO> batch = new ArrayList<>();
+            for (int i = 0; i < Math.min(BATCH_SIZE, count - seeded); i++) {
+                batch.add(appointment(SEEDED_FROM, random, doctors.get((doctor + i) % doctors.size()),
+                        patients.get(random.nextInt(patients.size()))));
+            }
+            appointmentService.createAppointments(batch, "dr" + doctor);
+        }
+    }
+
+    private void run() throws Exception {
+        int clients = Integer.parseInt(options.get("clients"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        System.out.printf("Running %d clients for %d s (after %d s warm-up) against %s, mix %s%n",
+                clients, duration.toSeconds(), warmup.toSeconds(), baseUrl, options.get("mix"));
+
+        long started = System.nanoTime();
+        measureFrom = started + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Random random = new Random(i);
+            threads.add(Thread.ofVirtual().name("load-client-" + i).start(() -> {
+                while (System.nanoTime() < end) {
+                    execute(mix[random.nextInt(mix.length)], random);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report((System.nanoTime() - measureFrom) / 1e9);
+    }
+
+    private void execute(Operation operation, Random random) {
+        Booking booking = operation == Operation.CANCEL ? bookings.poll() : null;
+        if (operation == Operation.CANCEL && booking == null) {
+            operation = Operation.BOOK; // Nothing booked yet to cancel
+        }
+        int doctor = random.nextInt(doctors.size());
+        String username = booking != null ? booking.username() : "dr" + doctor;
+
+        HttpRequest.Builder request = HttpRequest.newBuilder().header("X-Username", username);
+        switch (operation) {
+            case BOOK -> request.uri(URI.create(baseUrl + "/v1/appointment"))
+                    .header("Content-Type", "application/json")
+                    .POST(json(appointment(BOOKED_FROM, random, doctors.get(doctor), patients.get(random.nextInt(patients.size())))));
+            case CANCEL -> request.uri(URI.create(baseUrl + "/v1/appointment/cancel/" + booking.appointmentId()))
+                    .PUT(HttpRequest.BodyPublishers.noBody());
+            case DOCTORS -> request.uri(URI.create(baseUrl + "/v1/doctor")).GET();
+            case PAGED -> request.uri(URI.create(baseUrl + "/v1/appointment/paged?page=" + random.nextInt(10) + "&size=20")).GET();
+            case SEARCH -> request.uri(URI.create(baseUrl + "/v1/patient/search"))
+                    .header("Content-Type", "application/json")
+                    .POST(json(Map.of("query", Fixtures.firstName(random).toLowerCase())));
+        }
+
+        EndpointStats endpoint = stats.get(operation);
+        long started = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            record(endpoint, started);
+            if (operation == Operation.BOOK && response.statusCode() == 201) {
+                bookings.add(new Booking(UUID.fromString(objectMapper.readTree(response.body()).get("id").asText()), username));
+            } else if (operation == Operation.BOOK && response.statusCode() == 409) {
+                count(endpoint.conflicts, started); // Slot already taken, an expected outcome under random booking
+            } else if (response.statusCode() >= 400) {
+                count(endpoint.errors, started);
+            }
+        } catch (IOException e) {
+            record(endpoint, started);
+            count(endpoint.errors, started);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(EndpointStats endpoint, long started) {
+        if (started >= measureFrom) {
+            endpoint.latency.recordValue((System.nanoTime() - started) / 1_000);
+        }
+    }
+
+    private void count(LongAdder counter, long started) {
+        if (started >= measureFrom) {
+            counter.increment();
+        }
+    }
+
+    private void report(double seconds) throws IOException {
+        System.out.printf("%n%-34s %9s %7s %9s %10s %9s %9s %9s %9s%n",
+                "Endpoint", "Requests", "Errors", "Conflicts", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("seconds", seconds);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = stats.get(operation).latency.getIntervalHistogram();
+            long requests = histogram.getTotalCount();
+            if (requests == 0) {
+                continue;
+            }
+            total += requests;
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", requests);
+            endpoint.put("errors", stats.get(operation).errors.sum());
+            endpoint.put("conflicts", stats.get(operation).conflicts.sum());
+            endpoint.put("throughput", requests / seconds);
+            endpoint.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+            endpoint.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+            endpoint.put("p999", histogram.getValueAtPercentile(99.9) / 1000.0);
+            endpoint.put("max", histogram.getMaxValue() / 1000.0);
+            endpoints.put(operation.endpoint, endpoint);
+            System.out.printf("%-34s %9d %7d %9d %10.1f %9.1f %9.1f %9.1f %9.1f%n", operation.endpoint, requests,
+                    endpoint.get("errors"), endpoint.get("conflicts"), endpoint.get("throughput"), endpoint.get("p50"),
+                    endpoint.get("p99"), endpoint.get("p999"), endpoint.get("max"));
+        }
+        System.out.printf("%-34s %9d %7s %9s %10.1f%n", "Total", total, "", "", total / seconds);
+        result.put("endpoints", endpoints);
+
+        File out = new File(options.get("out"));
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(out, result);
+        System.out.printf("%nResults written to %s%n", out.getAbsolutePath());
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static AppointmentRequestDTO appointment(LocalDateTime from, Random random, UUID doctorId, UUID patientId) {
+        AppointmentRequestDTO appointment = new AppointmentRequestDTO();
+        appointment.setAppointmentTime(from.plusDays(random.nextInt(365)).plusMinutes(30L * random.nextInt(SLOTS_PER_DAY)));
+        appointment.setDurationMinutes(30);
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        appointment.setPatientId(patientId);
+        appointment.setDoctorIds(List.of(doctorId));
+        return appointment;
+    }
+
+    /**
+     * Expands {@code book:15,paged:30,...} into a table with one entry per weight unit, so that a
+     * uniform pick follows the weights.
+     */
+    private static Operation[] parseMix(String mix) {
+        List<Operation> table = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = Operation.of(parts[0].trim());
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                table.add(operation);
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("The mix must contain at least one operation.");
+        }
+        return table.toArray(Operation[]::new);
+    }
+}
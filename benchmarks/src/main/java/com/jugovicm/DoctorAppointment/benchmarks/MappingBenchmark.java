@@ -0,0 +1,73 @@
+package com.jugovicm.DoctorAppointment.benchmarks;
+
+import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.AppointmentRow;
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.service.impl.AppointmentServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-DTO mapping of the write paths ({@code mapToResponseDTO}) and row grouping of the read
+ * paths ({@code groupRows}). Both are private, so they are called through method handles; the service
+ * is built without repositories because neither method touches them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1", "3"})
+    int doctorsPerAppointment;
+
+    @Param({"100"})
+    int rowsAppointments;
+
+    private MethodHandle mapToResponseDTO;
+    private MethodHandle groupRows;
+    private Appointment appointment;
+    private List<AppointmentRow> rows;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        AppointmentServiceImpl service = new AppointmentServiceImpl(null, null, null, null, null, null, null, null);
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(AppointmentServiceImpl.class, MethodHandles.lookup());
+        mapToResponseDTO = lookup.findVirtual(AppointmentServiceImpl.class, "mapToResponseDTO",
+                MethodType.methodType(AppointmentResponseDTO.class, Appointment.class)).bindTo(service);
+        groupRows = lookup.findVirtual(AppointmentServiceImpl.class, "groupRows",
+                MethodType.methodType(List.class, List.class)).bindTo(service);
+
+        Random random = new Random(42);
+        appointment = Fixtures.appointment(random, doctorsPerAppointment);
+        rows = Fixtures.rows(random, rowsAppointments, doctorsPerAppointment);
+    }
+
+    @Benchmark
+    public AppointmentResponseDTO mapToResponseDTO() throws Throwable {
+        return (AppointmentResponseDTO) mapToResponseDTO.invokeExact(appointment);
+    }
+
+    @Benchmark
+    public List<?> groupRows() throws Throwable {
+        return (List<?>) groupRows.invokeExact(rows);
+    }
+}
@@ -0,0 +1,108 @@
+package com.jugovicm.DoctorAppointment.benchmarks;
+
+import com.jugovicm.DoctorAppointment.DoctorAppointmentApplication;
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.model.Doctor;
+import com.jugovicm.DoctorAppointment.model.Patient;
+import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
+import com.jugovicm.DoctorAppointment.repository.PatientRepository;
+import com.jugovicm.DoctorAppointment.search.PatientNameIndex;
+import com.jugovicm.DoctorAppointment.util.SearchText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Doctor and patient search against an embedded PostgreSQL with the application's schema and
+ * indexes (the Flyway migrations run at startup).
+ *
+ * <p>The whole application context (without the web server) is started once per fork, so the
+ * repositories run with the production JPA and cache configuration.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int DOCTORS = 5_000;
+    private static final int PATIENTS = 100_000;
+
+    // Exact surname, surname with a typo, short prefix
+    @Param({"petrovic", "petrvoic", "mil"})
+    String term;
+
+    private EmbeddedApplication application;
+    private DoctorRepository doctorRepository;
+    private PatientRepository patientRepository;
+    private PatientNameIndex patientNameIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        application = EmbeddedApplication.start(
+                new SpringApplicationBuilder(DoctorAppointmentApplication.class).web(WebApplicationType.NONE));
+        doctorRepository = application.getBean(DoctorRepository.class);
+        patientRepository = application.getBean(PatientRepository.class);
+        patientNameIndex = application.getBean(PatientNameIndex.class);
+
+        JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        Fixtures.insertDoctors(jdbcTemplate, random, DOCTORS);
+        Fixtures.insertPatients(jdbcTemplate, random, PATIENTS);
+        jdbcTemplate.execute("ANALYZE");
+
+        // Seeded through JDBC, so the name index built at startup is empty
+        Fixtures.rebuildPatientNameIndex(application);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    /**
+     * pg_trgm query behind {@code GET /v1/doctor/search} (first page of 20).
+     */
+    @Benchmark
+    public List<Doctor> searchDoctors() {
+        String normalized = SearchText.normalize(term);
+        return doctorRepository.searchDoctors(normalized, SearchText.escapeLike(normalized), PageRequest.of(0, 20));
+    }
+
+    /**
+     * The database fallback of patient search ({@code LIKE '%...%'} over names).
+     */
+    @Benchmark
+    public List<Patient> searchPatientsInDatabase() {
+        return patientRepository.searchPatients(term);
+    }
+
+    /**
+     * The in-memory trigram index that answers patient search once it is built.
+     */
+    @Benchmark
+    public List<PatientDTO> searchPatientsInIndex() {
+        return patientNameIndex.search(term, 50);
+    }
+}
@@ -0,0 +1,229 @@
+package com.jugovicm.DoctorAppointment.archive;
+
+import com.jugovicm.DoctorAppointment.schedule.DoctorScheduleIndex;
+import com.jugovicm.DoctorAppointment.util.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of {@code appointment}: creates them ahead of time and moves
+ * appointments older than the retention period to {@code appointment_archive}.
+ *
+ * <p>Rows are moved in batches, each in its own transaction, together with their
+ * {@code doctor_appointments} rows. A run that stops halfway leaves every appointment either live or
+ * archived, and the next run continues with what is left.</p>
+ *
+ * <p>An emptied partition is detached with {@code DETACH PARTITION ... CONCURRENTLY}, which never takes
+ * an ACCESS EXCLUSIVE lock on {@code appointment}, and under {@code archive.appointments.lock-timeout}
+ * so it gives up instead of waiting behind long reads. Rows that reached it before the detach are
+ * archived from the detached table, and only then is it dropped. A detach that timed out is finished
+ * in the next run.</p>
+ */
+@Component
+public class AppointmentArchiver implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentArchiver.class);
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("appointment_p(\\d{4})_(\\d{2})");
+
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname, i.inhdetachpending FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'appointment'::regclass ORDER BY c.relname";
+
+    // The partition name is inserted twice; it comes from the catalog and matches the pattern above.
+    // The appointment_id rows are removed here because a detached partition no longer has the triggers that do it.
+    private static final String ARCHIVE_BATCH_SQL = """
+            WITH batch AS (
+                     SELECT id FROM %1$s WHERE appointment_time < ? LIMIT ? FOR UPDATE SKIP LOCKED),
+                 links AS (
+                     DELETE FROM doctor_appointments da USING batch b WHERE da.appointment_id = b.id
+                     RETURNING da.appointment_id, da.doctor_id),
+                 archived_links AS (
+                     INSERT INTO doctor_appointments_archive (appointment_id, doctor_id)
+                     SELECT appointment_id, doctor_id FROM links),
+                 ids AS (
+                     DELETE FROM appointment_id k USING batch b WHERE k.id = b.id),
+                 moved AS (
+                     DELETE FROM %1$s a USING batch b WHERE a.id = b.id
+                     RETURNING a.id, a.patient_id, a.appointment_time, a.duration_minutes, a.status, a.created_by, a.version)
+            INSERT INTO appointment_archive (id, patient_id, appointment_time, duration_minutes, status, created_by, version)
+            SELECT id, patient_id, appointment_time, duration_minutes, status, created_by, version FROM moved
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final PartitionWindow partitionWindow;
+    private final int batchSize;
+    private final Duration lockTimeout;
+
+    @Autowired
+    public AppointmentArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               DoctorScheduleIndex doctorScheduleIndex, PartitionWindow partitionWindow,
+                               @Value("${archive.appointments.batch-size:1000}") int batchSize,
+                               @Value("${archive.appointments.lock-timeout:5s}") Duration lockTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.doctorScheduleIndex = doctorScheduleIndex;
+        this.partitionWindow = partitionWindow;
+        this.batchSize = batchSize;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Creates the partitions of the window during startup, before requests are accepted: the service
+     * accepts appointments in all of its months.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        createWindowPartitions();
+    }
+
+    @Scheduled(cron = "${archive.appointments.cron:0 30 3 * * *}")
+    public void run() {
+        createWindowPartitions();
+        archiveBefore(partitionWindow.firstMonth().atStartOfDay());
+    }
+
+    /**
+     * Up to one month past the window, so the month that opens at the turn of the month is already there.
+     */
+    private void createWindowPartitions() {
+        LocalDate firstMonth = partitionWindow.firstMonth();
+        createPartitions(firstMonth, (int) ChronoUnit.MONTHS.between(firstMonth, partitionWindow.lastMonth()) + 1);
+    }
+
+    /**
+     * Creates the partitions of the given month and the following ones that are missing.
+     */
+    public void createPartitions(LocalDate firstMonth, int months) {
+        for (int i = 0; i <= months; i++) {
+            jdbcTemplate.queryForObject("SELECT create_appointment_partition(?)", Object.class, firstMonth.plusMonths(i));
+        }
+    }
+
+    /**
+     * Moves every appointment that starts before the cutoff to the archive, then detaches and drops
+     * the monthly partitions that end at or before it.
+     *
+     * @return Number of archived appointments.
+     */
+    public int archiveBefore(LocalDateTime cutoff) {
+        long started = System.nanoTime();
+        int archived = 0;
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(PARTITIONS_SQL);
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("relname");
+            boolean detachPending = Boolean.TRUE.equals(partition.get("inhdetachpending"));
+            LocalDate month = monthOf(name);
+            if (month == null || !month.atStartOfDay().isBefore(cutoff)) {
+                continue; // Not created by us, or starts at or after the cutoff
+            }
+            if (!detachPending) {
+                archived += archivePartition(name, cutoff);
+            }
+            if (!month.plusMonths(1).atStartOfDay().isAfter(cutoff)) {
+                archived += retire(name, detachPending, cutoff);
+            }
+        }
+        log.info("Archived {} appointments older than {} in {} ms.", archived, cutoff, (System.nanoTime() - started) / 1_000_000);
+        return archived;
+    }
+
+    /**
+     * Moves batches until one comes back short. Rows locked by a running request are skipped and left
+     * for the next run.
+     */
+    private int archivePartition(String partition, LocalDateTime cutoff) {
+        String sql = ARCHIVE_BATCH_SQL.formatted(partition);
+        int archived = 0;
+        while (true) {
+            List<UUID> ids = transactionTemplate.execute(status -> {
+                List<UUID> moved = jdbcTemplate.queryForList(sql, UUID.class, cutoff, batchSize);
+                // Archived appointments no longer take part in double-booking checks
+                TransactionHooks.afterCommit(() -> moved.forEach(doctorScheduleIndex::release));
+                return moved;
+            });
+            archived += ids.size();
+            if (ids.size() < batchSize) {
+                return archived;
+            }
+        }
+    }
+
+    /**
+     * Detaches a partition that lies entirely before the cutoff, archives the rows that reached it after
+     * it was emptied, and drops it.
+     *
+     * @return Number of rows archived from the detached table.
+     */
+    private int retire(String partition, boolean detachPending, LocalDateTime cutoff) {
+        try {
+            detach(partition, detachPending);
+        } catch (DataAccessException e) {
+            log.warn("Could not detach partition {}, retrying in the next run: {}", partition, e.getMessage());
+            return 0;
+        }
+        // Detached: nothing is routed to it any more, so what it holds now is all it will ever hold
+        int archived = archivePartition(partition, cutoff);
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Detached and dropped partition {}.", partition);
+            } else {
+                log.warn("Detached partition {} still has rows and was kept.", partition);
+            }
+        });
+        return archived;
+    }
+
+    /**
+     * CONCURRENTLY cannot run in a transaction, so this uses its own auto-commit statement. A detach
+     * interrupted after its first step stays pending until FINALIZE completes it.
+     */
+    private void detach(String partition, boolean detachPending) {
+        String sql = "ALTER TABLE appointment DETACH PARTITION " + partition + (detachPending ? " FINALIZE" : " CONCURRENTLY");
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET lock_timeout = " + lockTimeout.toMillis());
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.execute("RESET lock_timeout");
+                }
+            }
+            return null;
+        });
+    }
+
+    private static LocalDate monthOf(String partition) {
+        Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), 1);
+    }
+}
@@ -0,0 +1,53 @@
+package com.jugovicm.DoctorAppointment.archive;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * The months of {@code appointment} that have partitions: from the retention cutoff,
+ * {@code archive.appointments.retention-months} back, to {@code archive.appointments.months-ahead}
+ * ahead. {@code appointment} has no default partition, so an appointment outside this window
+ * could not be stored. The service rejects such times instead of failing on insert.
+ */
+@Component
+public class PartitionWindow {
+
+    private final int retentionMonths;
+    private final int monthsAhead;
+
+    @Autowired
+    public PartitionWindow(@Value("${archive.appointments.retention-months:24}") int retentionMonths,
+                           @Value("${archive.appointments.months-ahead:12}") int monthsAhead) {
+        this.retentionMonths = retentionMonths;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * First day of the oldest month kept; older appointments are archived.
+     */
+    public LocalDate firstMonth() {
+        return LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+    }
+
+    /**
+     * First day of the newest month that accepts appointments.
+     */
+    public LocalDate lastMonth() {
+        return LocalDate.now().withDayOfMonth(1).plusMonths(monthsAhead);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the time is before the retention cutoff or after the last month.
+     */
+    public void check(LocalDateTime appointmentTime) {
+        if (appointmentTime.isBefore(firstMonth().atStartOfDay())
+                || !appointmentTime.isBefore(lastMonth().plusMonths(1).atStartOfDay())) {
+            throw new IllegalArgumentException("Appointment time must be on or after " + firstMonth()
+                    + " and before " + lastMonth().plusMonths(1) + ".");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.jugovicm.DoctorAppointment.config;
+
+import com.jugovicm.DoctorAppointment.metrics.QueryCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the per-request {@link QueryCounter}. Hibernate statistics (entity loads, query executions,
+ * second-level and query cache hits and misses per region) are published by Spring Boot's
+ * {@code HibernateMetricsAutoConfiguration}, because {@code hibernate.generate_statistics} is enabled.
+ */
+@Configuration
+public class HibernateMetricsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer(QueryCounter queryCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryCounter);
+    }
+}
@@ -0,0 +1,102 @@
+package com.jugovicm.DoctorAppointment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Active when {@code datasource.replicas.urls} is set (see the {@code replicas} profile). Replaces the
+ * data source with one that sends {@code @Transactional(readOnly = true)} work to the replicas through
+ * a {@link ReplicaRouter}.
+ *
+ * <p>The connection is only fetched on the first statement ({@link LazyConnectionDataSourceProxy}),
+ * after the transaction has marked it read-only, so the choice between primary and replica can
+ * follow the transaction. Replica pools take the {@code spring.datasource.hikari} settings, with their
+ * own URL and credentials.</p>
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replicas.urls")
+public class ReadReplicaConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRouter replicaRouter(DataSourceProperties properties, Environment environment,
+                                       ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool(binder, properties, properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword());
+        primary.setPoolName("primary");
+
+        List<String> urls = binder.bind("datasource.replicas.urls", Bindable.listOf(String.class)).get();
+        String username = environment.getProperty("datasource.replicas.username", properties.determineUsername());
+        String password = environment.getProperty("datasource.replicas.password", properties.determinePassword());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = pool(binder, properties, urls.get(i), username, password);
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setReadOnly(true);
+            // A request waits this long for a replica that went down before it falls back to the primary
+            replica.setConnectionTimeout(environment.getProperty("datasource.replicas.connection-timeout",
+                    Duration.class, Duration.ofSeconds(2)).toMillis());
+            meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.put(replica.getPoolName() + " (" + urls.get(i) + ")", replica);
+        }
+
+        return new ReplicaRouter(primary, replicas,
+                environment.getProperty("datasource.replicas.read-your-writes", Duration.class, Duration.ofSeconds(5)),
+                environment.getProperty("datasource.replicas.max-lag", Duration.class, Duration.ofSeconds(10)));
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(replicaRouter.writeDataSource());
+        dataSource.setReadOnlyDataSource(replicaRouter.readDataSource());
+        return dataSource;
+    }
+
+    /**
+     * Makes the request's {@code X-Username} the user whose writes and reads the router pairs up.
+     */
+    @Bean
+    public OncePerRequestFilter replicaRoutingUserFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                try (ReplicaRouter.UserScope ignored = ReplicaRouter.actAs(request.getHeader("X-Username"))) {
+                    filterChain.doFilter(request, response);
+                }
+            }
+        };
+    }
+
+    private static HikariDataSource pool(Binder binder, DataSourceProperties properties, String url, String username, String password) {
+        HikariDataSource pool = new HikariDataSource();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        return pool;
+    }
+}
@@ -0,0 +1,224 @@
+package com.jugovicm.DoctorAppointment.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the database for each connection: read-only transactions go to a healthy replica in
+ * round-robin order, everything else goes to the primary.
+ *
+ * <p>Reads fall back to the primary when no replica is healthy, when a replica refuses a connection,
+ * and for a short while after the same user wrote something (read-your-writes), so a client never
+ * misses its own change because a replica lags behind. The user is the {@code X-Username} of the
+ * current request, see {@link #actAs}. Writes are remembered per application instance.</p>
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    // Seconds the replica is behind; zero when it has replayed everything it received (an idle primary
+    // sends nothing, so the last replay time alone would make a caught-up replica look stale)
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private static final ThreadLocal<String> currentUser = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration readYourWrites;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>(); // username -> System.nanoTime() of the commit
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, Duration readYourWrites, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.entrySet().stream().map(entry -> new Replica(entry.getKey(), entry.getValue())).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Routes reads on behalf of the user (null for none) until the returned scope is closed.
+     */
+    public static UserScope actAs(String username) {
+        UserScope scope = new UserScope(currentUser.get());
+        currentUser.set(username);
+        return scope;
+    }
+
+    /**
+     * The primary. A connection taken by a user marks that user's reads as primary-only once it is closed.
+     */
+    public DataSource writeDataSource() {
+        return new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return recordingWriteOnClose(super.getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return recordingWriteOnClose(super.getConnection(username, password));
+            }
+        };
+    }
+
+    /**
+     * A healthy replica, or the primary (see the class comment).
+     */
+    public DataSource readDataSource() {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return readConnection(DataSource::getConnection);
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return readConnection(dataSource -> dataSource.getConnection(username, password));
+            }
+        };
+    }
+
+    private Connection readConnection(ConnectionOpener opener) throws SQLException {
+        if (!wroteRecently(currentUser.get())) {
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    return opener.open(replica.dataSource);
+                } catch (SQLFeatureNotSupportedException e) {
+                    break; // Pools such as Hikari do not take other credentials; that says nothing about the replica
+                } catch (SQLException | RuntimeException e) { // Hikari fails its first start with a RuntimeException
+                    replica.markDown(e.getMessage());
+                }
+            }
+        }
+        return opener.open(primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private boolean wroteRecently(String username) {
+        if (username == null) {
+            return false;
+        }
+        Long wroteAt = lastWrites.get(username);
+        return wroteAt != null && System.nanoTime() - wroteAt < readYourWrites.toNanos();
+    }
+
+    private Connection recordingWriteOnClose(Connection connection) {
+        String username = currentUser.get();
+        if (username == null) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        // Closed after the commit: from here on the write may still be missing on a replica
+                        if (method.getName().equals("close")) {
+                            lastWrites.put(username, System.nanoTime());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Marks each replica healthy when it answers and is at most {@code maxLag} behind, and forgets
+     * writes older than the read-your-writes window.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.health-check-interval:5s}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(LAG_SQL)) {
+                lag.next();
+                double lagSeconds = lag.getDouble(1);
+                if (lagSeconds * 1000 > maxLag.toMillis()) {
+                    replica.markDown("replication lag " + lagSeconds + " s");
+                } else {
+                    replica.markUp();
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e.getMessage());
+            }
+        }
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(wroteAt -> now - wroteAt >= readYourWrites.toNanos());
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    public record UserScope(String previousUser) implements AutoCloseable {
+        @Override
+        public void close() {
+            currentUser.set(previousUser);
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy; // Not used before the first health check passes
+        private volatile boolean checked;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private void markDown(String reason) {
+            if (healthy || !checked) {
+                log.warn("Replica {} is unavailable ({}), reading from the primary.", name, reason);
+            }
+            healthy = false;
+            checked = true;
+        }
+
+        private void markUp() {
+            if (!healthy) {
+                log.info("Replica {} is available.", name);
+            }
+            healthy = true;
+            checked = true;
+        }
+    }
+}
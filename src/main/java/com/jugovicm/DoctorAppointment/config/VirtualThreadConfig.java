@@ -0,0 +1,55 @@
+package com.jugovicm.DoctorAppointment.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Active when virtual threads are enabled ({@code spring.threads.virtual.enabled=true}, see the
+ * {@code virtual} profile). Tomcat and {@code @Async} then run on virtual threads, and the data source
+ * is wrapped in a {@link ConnectionLimitingDataSource} so that unbounded request concurrency cannot
+ * stampede the connection pool.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+                    int maxConnections = environment.getProperty("datasource.connection-limit.permits", Integer.class,
+                            environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+                    Duration acquireTimeout = environment.getProperty("datasource.connection-limit.acquire-timeout",
+                            Duration.class, Duration.ofSeconds(5));
+                    return new ConnectionLimitingDataSource(dataSource, maxConnections, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder connectionLimitMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConnectionLimitingDataSource limited) {
+                Gauge.builder("datasource.connection.limit.active", limited, ConnectionLimitingDataSource::getActiveConnections)
+                        .description("Connections borrowed through the connection limit")
+                        .register(registry);
+                Gauge.builder("datasource.connection.limit.waiting", limited, ConnectionLimitingDataSource::getWaitingCallers)
+                        .description("Callers waiting for a connection permit")
+                        .register(registry);
+            }
+        };
+    }
+}
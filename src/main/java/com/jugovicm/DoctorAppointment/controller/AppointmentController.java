@@ -1,8 +1,19 @@
 package com.jugovicm.DoctorAppointment.controller;
 
+import com.jugovicm.DoctorAppointment.dto.AppointmentBatchResultDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentRequestDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarView;
+import com.jugovicm.DoctorAppointment.dto.CursorPageDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.service.AppointmentFeedService;
 import com.jugovicm.DoctorAppointment.service.AppointmentService;
+import com.jugovicm.DoctorAppointment.service.CalendarService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,11 +23,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -27,10 +49,17 @@ import java.util.UUID;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final CalendarService calendarService;
+    private final AppointmentFeedService appointmentFeedService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public AppointmentController(AppointmentService appointmentService) {
+    public AppointmentController(AppointmentService appointmentService, CalendarService calendarService,
+                                 AppointmentFeedService appointmentFeedService, ObjectMapper objectMapper) {
         this.appointmentService = appointmentService;
+        this.calendarService = calendarService;
+        this.appointmentFeedService = appointmentFeedService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -40,7 +69,8 @@ public class AppointmentController {
             responses = {
                     @ApiResponse(responseCode = "201", description = "Returns the created appointment."),
                     @ApiResponse(responseCode = "400", description = "Validation error."),
-                    @ApiResponse(responseCode = "401", description = "Username header missing.")
+                    @ApiResponse(responseCode = "401", description = "Username header missing."),
+                    @ApiResponse(responseCode = "409", description = "A doctor is already booked in that time slot.")
             })
     @PostMapping
     public ResponseEntity<AppointmentResponseDTO> createAppointment(
@@ -51,53 +81,96 @@ public class AppointmentController {
         return new ResponseEntity<>(appointmentResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * Create many appointments at once
+     */
+    @Operation(summary = "Create appointments in bulk",
+            description = "Creates up to 500 appointments in one transaction. Every item is validated on its own; "
+                    + "rejected items (validation error, unknown patient or doctor, double booking) are reported "
+                    + "with their index and do not prevent the others from being created.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns the outcome of every item."),
+                    @ApiResponse(responseCode = "401", description = "Username header missing."),
+                    @ApiResponse(responseCode = "409", description = "Empty batch or more than 500 items.")
+            })
+    @PostMapping("/batch")
+    public ResponseEntity<AppointmentBatchResultDTO> createAppointments(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestBody List<AppointmentRequestDTO> dtos) {
+        return ResponseEntity.ok(appointmentService.createAppointments(dtos, username));
+    }
+
     /**
      * Retrieve an appointment by ID
      */
     @Operation(summary = "Retrieve an appointment by ID",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Returns appointment details."),
+                    @ApiResponse(responseCode = "200", description = "Returns appointment details with an ETag."),
+                    @ApiResponse(responseCode = "304", description = "Unchanged since the ETag sent in If-None-Match."),
                     @ApiResponse(responseCode = "404", description = "Appointment not found.")
             })
     @GetMapping("/{appointmentId}")
     public ResponseEntity<AppointmentResponseDTO> getAppointment(
             @RequestHeader(value = "X-Username", required = true) String username,
-            @PathVariable UUID appointmentId) {
+            @PathVariable UUID appointmentId,
+            WebRequest request) {
 
+        // Only versions are read here; the appointment is loaded and serialized when the client's copy is stale
+        String eTag = appointmentService.getAppointmentETag(appointmentId);
+        if (request.checkNotModified(eTag)) {
+            return null; // 304 Not Modified
+        }
         AppointmentResponseDTO appointmentResponse = appointmentService.getAppointment(appointmentId);
-        return ResponseEntity.ok(appointmentResponse);
+        return ResponseEntity.ok().eTag(eTag).body(appointmentResponse);
     }
 
     /**
      * Cancel an appointment
      */
     @Operation(summary = "Cancel an appointment",
-            description = "Only the doctor who created the appointment can cancel it.",
+            description = "Only the doctor who created the appointment can cancel it. " +
+                    "Send 'Prefer: return=minimal' to skip loading the appointment for the response.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Appointment canceled successfully."),
+                    @ApiResponse(responseCode = "204", description = "Appointment canceled successfully, no body (Prefer: return=minimal)."),
                     @ApiResponse(responseCode = "403", description = "User not authorized to cancel this appointment."),
-                    @ApiResponse(responseCode = "404", description = "Appointment not found.")
+                    @ApiResponse(responseCode = "404", description = "Appointment not found."),
+                    @ApiResponse(responseCode = "412", description = "The appointment no longer matches the ETag sent in If-Match.")
             })
     @PutMapping("/cancel/{appointmentId}")
     public ResponseEntity<AppointmentResponseDTO> cancelAppointment(
             @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = "Prefer", required = false) String prefer,
             @PathVariable UUID appointmentId) throws AccessDeniedException {
 
-        return ResponseEntity.ok(appointmentService.cancelAppointment(appointmentId, username));
+        if (prefer != null && prefer.contains("return=minimal")) {
+            appointmentService.cancelAppointment(appointmentId, username, ifMatch, false);
+            return ResponseEntity.noContent().header("Preference-Applied", "return=minimal").build();
+        }
+        return ResponseEntity.ok(appointmentService.cancelAppointment(appointmentId, username, ifMatch, true));
     }
 
     /**
      * Retrieve all appointments
      */
     @Operation(summary = "Retrieve all appointments",
+            description = "Optional filters: appointments starting at or after 'from' and before 'to' " +
+                    "(ISO date-time, both required when filtering) with the given status.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Returns a list of appointments.")
+                    @ApiResponse(responseCode = "200", description = "Returns a list of appointments."),
+                    @ApiResponse(responseCode = "409", description = "Missing or empty time range.")
             })
     @GetMapping
     public ResponseEntity<List<AppointmentResponseDTO>> getAllAppointments(
-            @RequestHeader(value = "X-Username", required = true) String username) {
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) AppointmentStatus status) {
 
-        List<AppointmentResponseDTO> appointments = appointmentService.getAllAppointments();
+        List<AppointmentResponseDTO> appointments = isFiltered(from, to, status)
+                ? appointmentService.getAppointments(from, to, status)
+                : appointmentService.getAllAppointments();
         return ResponseEntity.ok(appointments);
     }
 
@@ -105,34 +178,80 @@ public class AppointmentController {
      * Retrieve all appointments for a doctor
      */
     @Operation(summary = "Retrieve all appointments by doctor ID",
+            description = "Optional filters: appointments starting at or after 'from' and before 'to' " +
+                    "(ISO date-time, both required when filtering) with the given status.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Returns a list of appointments for the specified doctor."),
-                    @ApiResponse(responseCode = "404", description = "Doctor not found or no appointments found.")
+                    @ApiResponse(responseCode = "200", description = "Returns a list of appointments for the specified doctor with an ETag."),
+                    @ApiResponse(responseCode = "304", description = "Unchanged since the ETag sent in If-None-Match."),
+                    @ApiResponse(responseCode = "404", description = "Doctor not found or no appointments found."),
+                    @ApiResponse(responseCode = "409", description = "Missing or empty time range.")
             })
     @GetMapping("/doctor/{doctorId}")
     public ResponseEntity<List<AppointmentResponseDTO>> getAppointmentsByDoctor(
             @RequestHeader(value = "X-Username", required = true) String username,
-            @PathVariable UUID doctorId) {
+            @PathVariable UUID doctorId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) AppointmentStatus status,
+            WebRequest request) {
 
-        List<AppointmentResponseDTO> appointments = appointmentService.getAppointmentsByDoctor(doctorId);
+        // The ETag covers all of the doctor's appointments, so it also holds for any filtered subset
+        String eTag = appointmentService.getAppointmentsByDoctorETag(doctorId);
+        if (request.checkNotModified(eTag)) {
+            return null; // 304 Not Modified
+        }
+        List<AppointmentResponseDTO> appointments = isFiltered(from, to, status)
+                ? appointmentService.getAppointmentsByDoctor(doctorId, from, to, status)
+                : appointmentService.getAppointmentsByDoctor(doctorId);
 
-        return ResponseEntity.ok(appointments);
+        return ResponseEntity.ok().eTag(eTag).body(appointments);
+    }
+
+    /**
+     * Live changes to a doctor's appointments
+     */
+    @Operation(summary = "Stream changes to a doctor's appointments",
+            description = "Server-Sent Events: one CREATED, UPDATED, CANCELLED or DELETED event per committed change " +
+                    "that involves the doctor, with the change as JSON. Load the list once, then apply the events instead of polling. " +
+                    "Reconnecting with Last-Event-ID resends what was missed; a RESET event means that is no longer possible " +
+                    "and the list must be loaded again. Changes made through any instance are included; event IDs are per instance, " +
+                    "so resuming on another instance starts with a RESET.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Event stream (text/event-stream)."),
+                    @ApiResponse(responseCode = "404", description = "Doctor not found."),
+                    @ApiResponse(responseCode = "409", description = "Last-Event-ID is not an event ID.")
+            })
+    @GetMapping(value = "/doctor/{doctorId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAppointmentsByDoctor(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @PathVariable UUID doctorId) {
+
+        return appointmentFeedService.subscribe(doctorId, lastEventId);
     }
 
     /**
      * Retrieve all appointments for a patient
      */
     @Operation(summary = "Retrieve all appointments by patient ID",
+            description = "Optional filters: appointments starting at or after 'from' and before 'to' " +
+                    "(ISO date-time, both required when filtering) with the given status.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Returns a list of appointments for the specified patient."),
-                    @ApiResponse(responseCode = "404", description = "Patient not found or no appointments found.")
+                    @ApiResponse(responseCode = "404", description = "Patient not found or no appointments found."),
+                    @ApiResponse(responseCode = "409", description = "Missing or empty time range.")
             })
     @GetMapping("/patient/{patientId}")
     public ResponseEntity<Object> getAppointmentsByPatient(
             @RequestHeader(value = "X-Username", required = true) String username,
-            @PathVariable UUID patientId) {
+            @PathVariable UUID patientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) AppointmentStatus status) {
 
-        List<AppointmentResponseDTO> appointments = appointmentService.getAppointmentsByPatient(patientId);
+        List<AppointmentResponseDTO> appointments = isFiltered(from, to, status)
+                ? appointmentService.getAppointmentsByPatient(patientId, from, to, status)
+                : appointmentService.getAppointmentsByPatient(patientId);
 
         if (appointments.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -142,6 +261,28 @@ public class AppointmentController {
         return ResponseEntity.ok(appointments);
     }
 
+    /**
+     * Day or week agenda of several doctors
+     */
+    @Operation(summary = "Retrieve the calendar of several doctors",
+            description = "Returns the agenda of each doctor for one day or for the Monday-to-Sunday week containing 'date', " +
+                    "grouped by day. An appointment is listed on every day it overlaps.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns one agenda per doctor, in the requested order."),
+                    @ApiResponse(responseCode = "404", description = "Doctor not found."),
+                    @ApiResponse(responseCode = "409", description = "No doctor IDs or more than 50.")
+            })
+    @GetMapping("/calendar")
+    public ResponseEntity<CalendarDTO> getCalendar(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestParam List<UUID> doctorIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "DAY") CalendarView view,
+            @RequestParam(required = false) AppointmentStatus status) {
+
+        return ResponseEntity.ok(calendarService.getCalendar(doctorIds, date, view, status));
+    }
+
     /**
      * Delete an appointment
      */
@@ -171,14 +312,17 @@ public class AppointmentController {
                     @ApiResponse(responseCode = "200", description = "Appointment updated successfully."),
                     @ApiResponse(responseCode = "400", description = "Invalid appointment time."),
                     @ApiResponse(responseCode = "403", description = "User not authorized to update this appointment."),
-                    @ApiResponse(responseCode = "404", description = "Appointment not found.")
+                    @ApiResponse(responseCode = "404", description = "Appointment not found."),
+                    @ApiResponse(responseCode = "409", description = "A doctor is already booked in that time slot."),
+                    @ApiResponse(responseCode = "412", description = "The appointment no longer matches the ETag sent in If-Match.")
             })
     @PutMapping("/{appointmentId}")
     public ResponseEntity<AppointmentResponseDTO> updateAppointment(
             @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @PathVariable UUID appointmentId,
             @Valid @RequestBody AppointmentRequestDTO dto) throws AccessDeniedException {
-        return ResponseEntity.ok(appointmentService.updateAppointment(appointmentId, dto, username));
+        return ResponseEntity.ok(appointmentService.updateAppointment(appointmentId, dto, username, ifMatch));
     }
 
     @GetMapping("/paged")
@@ -187,7 +331,7 @@ public class AppointmentController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        Pageable pageable = PageRequest.of(page, size);
+        Pageable pageable = PageRequest.of(page, size, Sort.by("appointmentTime", "id"));
         return ResponseEntity.ok(appointmentService.getAllAppointments(pageable));
     }
 
@@ -198,8 +342,77 @@ public class AppointmentController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        Pageable pageable = PageRequest.of(page, size);
+        Pageable pageable = PageRequest.of(page, size, Sort.by("appointmentTime", "id"));
         return ResponseEntity.ok(appointmentService.getAppointmentsByDoctor(doctorId, pageable));
     }
 
+    @Operation(summary = "Retrieve appointments with cursor pagination",
+            description = "Pages are ordered by appointment time. Pass nextCursor of the previous page as 'after' to continue.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns one page of appointments and the next cursor."),
+                    @ApiResponse(responseCode = "409", description = "Invalid cursor or page size.")
+            })
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentResponseDTO>> getAllAppointmentsByCursor(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size) {
+
+        return ResponseEntity.ok(appointmentService.getAllAppointments(after, size));
+    }
+
+    @Operation(summary = "Retrieve appointments for a doctor with cursor pagination",
+            description = "Pages are ordered by appointment time. Pass nextCursor of the previous page as 'after' to continue.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns one page of appointments and the next cursor."),
+                    @ApiResponse(responseCode = "409", description = "Invalid cursor or page size.")
+            })
+    @GetMapping("/doctor/{doctorId}/cursor")
+    public ResponseEntity<CursorPageDTO<AppointmentResponseDTO>> getAppointmentsByDoctorByCursor(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @PathVariable UUID doctorId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size) {
+
+        return ResponseEntity.ok(appointmentService.getAppointmentsByDoctor(doctorId, after, size));
+    }
+
+
+    @Operation(summary = "Export all appointments",
+            description = "Streams every appointment as newline-delimited JSON (one appointment per line) while it is read from the database.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Streams the appointments."),
+                    @ApiResponse(responseCode = "409", description = "Unsupported export format.")
+            })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAppointments(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        if (!"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+
+        // One JSON document per line; the servlet buffer decides when bytes go out, not every row
+        ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> appointmentService.exportAppointments(appointment -> {
+            try {
+                writer.writeValue(outputStream, appointment);
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static boolean isFiltered(LocalDateTime from, LocalDateTime to, AppointmentStatus status) {
+        return from != null || to != null || status != null;
+    }
+
 }
@@ -1,6 +1,8 @@
 package com.jugovicm.DoctorAppointment.controller;
 
+import com.jugovicm.DoctorAppointment.dto.AvailabilityDTO;
 import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
+import com.jugovicm.DoctorAppointment.service.AvailabilityService;
 import com.jugovicm.DoctorAppointment.service.DoctorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -8,10 +10,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -22,10 +27,12 @@ import java.util.UUID;
 public class DoctorController {
 
     private final DoctorService doctorService;
+    private final AvailabilityService availabilityService;
 
     @Autowired
-    public DoctorController(DoctorService doctorService) {
+    public DoctorController(DoctorService doctorService, AvailabilityService availabilityService) {
         this.doctorService = doctorService;
+        this.availabilityService = availabilityService;
     }
 
     @Operation(summary = "Create a new doctor",
@@ -54,6 +61,17 @@ public class DoctorController {
         return ResponseEntity.ok(doctor);
     }
 
+    @Operation(summary = "Delete all doctors without appointments",
+            description = "Spares doctors created within inactive.min-age (default 30 days), who may not have booked yet.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns the number of deleted doctors.")
+            })
+    @DeleteMapping("/inactive")
+    public ResponseEntity<Map<String, Integer>> deleteInactiveDoctors(
+            @RequestHeader(value = "X-Username", required = true) String username) {
+        return ResponseEntity.ok(Map.of("deleted", doctorService.deleteInactiveDoctors()));
+    }
+
     @Operation(summary = "Delete a doctor",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Doctor deleted successfully."),
@@ -91,8 +109,9 @@ public class DoctorController {
         return ResponseEntity.ok(updatedDoctor);
     }
 
-    //http://localhost:8080/v1/doctor/search?query=drmica
+    //http://localhost:8080/v1/doctor/search?query=drmica&page=0&size=20
     @Operation(summary = "Search doctors",
+            description = "Fuzzy search by name or username. Results are ordered by relevance and paged (at most 100 per page).",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Returns a list of doctors matching the query."),
                     @ApiResponse(responseCode = "404", description = "No doctors found for the given query.")
@@ -100,11 +119,51 @@ public class DoctorController {
     @GetMapping("/search")
     public ResponseEntity<List<DoctorDTO>> searchDoctors(
             @RequestHeader(value = "X-Username", required = true) String username,
-            @RequestParam("query") String query) {
-        List<DoctorDTO> doctors = doctorService.searchDoctors(query);
+            @RequestParam("query") String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        List<DoctorDTO> doctors = doctorService.searchDoctors(query, PageRequest.of(page, size));
 
         return ResponseEntity.ok(doctors);
     }
+    //http://localhost:8080/v1/doctor/{id}/availability?from=2030-03-01T00:00:00&to=2030-03-08T00:00:00&slot=30&limit=10
+    @Operation(summary = "Find free slots of a doctor",
+            description = "Returns the earliest free slots within working hours, at most 100. The window may span up to 31 days.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns the free slots, earliest first."),
+                    @ApiResponse(responseCode = "404", description = "Doctor not found."),
+                    @ApiResponse(responseCode = "409", description = "Invalid window, slot length or limit.")
+            })
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<AvailabilityDTO> getAvailability(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @PathVariable UUID id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "30") int slot,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(availabilityService.findFreeSlots(List.of(id), from, to, slot, limit));
+    }
+
+    //http://localhost:8080/v1/doctor/availability?doctorIds=...&doctorIds=...&from=2030-03-01T00:00:00&to=2030-03-08T00:00:00
+    @Operation(summary = "Find slots in which several doctors are all free",
+            description = "For appointments with several doctors. Takes up to 10 doctor IDs; otherwise the same as the single-doctor variant.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns the shared free slots, earliest first."),
+                    @ApiResponse(responseCode = "404", description = "One of the doctors was not found."),
+                    @ApiResponse(responseCode = "409", description = "Invalid doctor list, window, slot length or limit.")
+            })
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityDTO> getJointAvailability(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            @RequestParam List<UUID> doctorIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "30") int slot,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(availabilityService.findFreeSlots(doctorIds, from, to, slot, limit));
+    }
+
     // Search doctor, POST method,
     //@Operation(summary = "Search doctors",
     //        responses = {
@@ -2,6 +2,8 @@ package com.jugovicm.DoctorAppointment.controller;
 
 import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
 import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.dto.PatientImportResultDTO;
+import com.jugovicm.DoctorAppointment.service.PatientImportService;
 import com.jugovicm.DoctorAppointment.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,6 +18,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -26,10 +30,12 @@ import java.util.UUID;
 public class PatientController {
 
     private final PatientService patientService;
+    private final PatientImportService patientImportService;
 
     @Autowired
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, PatientImportService patientImportService) {
         this.patientService = patientService;
+        this.patientImportService = patientImportService;
     }
 
     @Operation(summary = "Create a new patient",
@@ -45,6 +51,47 @@ public class PatientController {
         return new ResponseEntity<>(patientService.createPatient(dto), HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Import patients from CSV",
+            description = "Streams the request body; the first line must name the columns firstName, lastName, middleName "
+                    + "and dateOfBirth (yyyy-MM-dd). Rows are validated like single patients; invalid rows are skipped "
+                    + "and reported (the first 100) in the summary.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns imported and rejected row counts."),
+                    @ApiResponse(responseCode = "401", description = "Username header missing."),
+                    @ApiResponse(responseCode = "409", description = "CSV header is missing required columns.")
+            })
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<PatientImportResultDTO> importPatientsCsv(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            InputStream body) throws IOException {
+        return ResponseEntity.ok(patientImportService.importPatients(body, PatientImportService.Format.CSV));
+    }
+
+    @Operation(summary = "Import patients from NDJSON",
+            description = "Streams the request body, one patient JSON object per line. "
+                    + "Invalid rows are skipped and reported (the first 100) in the summary.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns imported and rejected row counts."),
+                    @ApiResponse(responseCode = "401", description = "Username header missing.")
+            })
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<PatientImportResultDTO> importPatientsNdjson(
+            @RequestHeader(value = "X-Username", required = true) String username,
+            InputStream body) throws IOException {
+        return ResponseEntity.ok(patientImportService.importPatients(body, PatientImportService.Format.NDJSON));
+    }
+
+    @Operation(summary = "Delete all patients without appointments",
+            description = "Spares patients created within inactive.min-age (default 30 days), who may not have booked yet.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Returns the number of deleted patients.")
+            })
+    @DeleteMapping("/inactive")
+    public ResponseEntity<Map<String, Integer>> deleteInactivePatients(
+            @RequestHeader(value = "X-Username", required = true) String username) {
+        return ResponseEntity.ok(Map.of("deleted", patientService.deleteInactivePatients()));
+    }
+
     @Operation(summary = "Delete a patient",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Patient deleted successfully."),
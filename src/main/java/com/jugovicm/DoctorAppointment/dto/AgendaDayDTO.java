@@ -0,0 +1,18 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgendaDayDTO {
+    private LocalDate date;
+    private List<AgendaEntryDTO> appointments; // In time order
+}
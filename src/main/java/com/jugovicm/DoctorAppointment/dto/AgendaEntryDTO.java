@@ -0,0 +1,23 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgendaEntryDTO {
+    private UUID id;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private AppointmentStatus status;
+    private UUID patientId;
+    private String patientName;
+}
@@ -0,0 +1,13 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class AppointmentBatchItemDTO {
+    private int index; // Position of the item in the request
+    private boolean created;
+    private AppointmentResponseDTO appointment; // Set when created
+    private String error; // Set when rejected
+}
@@ -0,0 +1,15 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class AppointmentBatchResultDTO {
+    private int total;
+    private int created;
+    private int rejected;
+    private List<AppointmentBatchItemDTO> items; // One result per request item, in request order
+}
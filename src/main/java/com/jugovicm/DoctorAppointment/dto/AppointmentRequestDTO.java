@@ -1,7 +1,9 @@
 package com.jugovicm.DoctorAppointment.dto;
 
 import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -16,6 +18,11 @@ public class AppointmentRequestDTO {
     @NotNull(message = "Appointment time is required.")
     private LocalDateTime appointmentTime;
 
+    // Optional, defaults to 30 minutes
+    @Positive(message = "Duration must be positive.")
+    @Max(value = 720, message = "Duration must not exceed 720 minutes.")
+    private Integer durationMinutes;
+
     @NotNull(message = "Status is required.")
     private AppointmentStatus status;
 
@@ -13,6 +13,7 @@ import java.util.UUID;
 public class AppointmentResponseDTO {
     private UUID id;
     private LocalDateTime appointmentTime;
+    private int durationMinutes;
     private AppointmentStatus status;
     private PatientDTO patient;
     private List<DoctorDTO> doctors;
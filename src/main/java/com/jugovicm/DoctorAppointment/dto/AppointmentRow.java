@@ -0,0 +1,28 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One flat row of the read-only appointment query: appointment and patient columns
+ * repeated for every doctor of the appointment (doctor columns are null when there is none).
+ */
+public record AppointmentRow(
+        UUID id,
+        LocalDateTime appointmentTime,
+        int durationMinutes,
+        AppointmentStatus status,
+        String createdBy,
+        UUID patientId,
+        String patientFirstName,
+        String patientLastName,
+        String patientMiddleName,
+        LocalDate patientDateOfBirth,
+        UUID doctorId,
+        String doctorUsername,
+        String doctorFirstName,
+        String doctorLastName) {
+}
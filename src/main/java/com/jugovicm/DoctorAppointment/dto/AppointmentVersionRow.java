@@ -0,0 +1,14 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import java.util.UUID;
+
+/**
+ * Versions behind the ETag of one appointment, repeated for every doctor of the appointment
+ * (doctor columns are null when there is none).
+ */
+public record AppointmentVersionRow(
+        long version,
+        long patientVersion,
+        UUID doctorId,
+        Long doctorVersion) {
+}
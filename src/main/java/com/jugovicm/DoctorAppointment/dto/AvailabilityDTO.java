@@ -0,0 +1,15 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class AvailabilityDTO {
+    private List<UUID> doctorIds;
+    private int slotMinutes;
+    private List<AvailableSlotDTO> slots; // Earliest free slots shared by all doctors, in time order
+}
@@ -0,0 +1,17 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableSlotDTO {
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
@@ -0,0 +1,16 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+public class CalendarDTO {
+    private CalendarView view;
+    private LocalDate from;
+    private LocalDate to; // Last day shown (inclusive)
+    private List<DoctorAgendaDTO> doctors; // In the order the doctor IDs were requested
+}
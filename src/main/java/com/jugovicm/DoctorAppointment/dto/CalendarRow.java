@@ -0,0 +1,20 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One appointment of one doctor in a calendar window, with only the columns an agenda shows.
+ */
+public record CalendarRow(
+        UUID doctorId,
+        UUID id,
+        LocalDateTime appointmentTime,
+        int durationMinutes,
+        AppointmentStatus status,
+        UUID patientId,
+        String patientFirstName,
+        String patientLastName) {
+}
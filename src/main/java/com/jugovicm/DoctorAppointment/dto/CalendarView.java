@@ -0,0 +1,9 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+/**
+ * Span of a calendar: the given day, or the Monday-to-Sunday week that contains it.
+ */
+public enum CalendarView {
+    DAY,
+    WEEK
+}
@@ -0,0 +1,15 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor; // Opaque token, pass it back as ?after= to get the next page
+}
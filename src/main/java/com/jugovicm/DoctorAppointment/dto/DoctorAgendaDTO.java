@@ -0,0 +1,16 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class DoctorAgendaDTO {
+    private UUID doctorId;
+    private String firstName;
+    private String lastName;
+    private List<AgendaDayDTO> days; // Every day of the view, also the empty ones
+}
@@ -0,0 +1,14 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One doctor of one scheduled appointment, as loaded into the doctor schedule index.
+ */
+public record DoctorBookingRow(
+        UUID appointmentId,
+        UUID doctorId,
+        LocalDateTime appointmentTime,
+        int durationMinutes) {
+}
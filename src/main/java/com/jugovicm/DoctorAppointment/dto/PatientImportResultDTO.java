@@ -0,0 +1,15 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class PatientImportResultDTO {
+    private long imported;
+    private long rejected;
+    private List<RejectedRowDTO> rejectedRows; // The first rejected rows only, see rejectedRowsTruncated
+    private boolean rejectedRowsTruncated;
+}
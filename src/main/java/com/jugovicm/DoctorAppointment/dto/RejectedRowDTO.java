@@ -0,0 +1,15 @@
+package com.jugovicm.DoctorAppointment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RejectedRowDTO {
+    private long line; // 1-based line number in the uploaded file
+    private String error;
+}
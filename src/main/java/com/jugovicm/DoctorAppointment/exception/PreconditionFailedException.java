@@ -0,0 +1,11 @@
+package com.jugovicm.DoctorAppointment.exception;
+
+/**
+ * Thrown when an {@code If-Match} header does not match the current ETag of the resource.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
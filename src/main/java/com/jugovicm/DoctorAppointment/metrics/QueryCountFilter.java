@@ -0,0 +1,57 @@
+package com.jugovicm.DoctorAppointment.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records how many SQL statements each request executes as the {@code http.server.requests.queries}
+ * summary, tagged like {@code http.server.requests} with the method and URI pattern.
+ *
+ * <p>Only statements on the request thread are counted; the body of a streamed export runs on an
+ * async thread and is not included.</p>
+ */
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCounter queryCounter;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public QueryCountFilter(QueryCounter queryCounter, MeterRegistry meterRegistry) {
+        this.queryCounter = queryCounter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        queryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int queries = queryCounter.stop();
+            // Set once a handler has matched; requests without one (404, static resources) are skipped
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (uri != null) {
+                DistributionSummary.builder("http.server.requests.queries")
+                        .description("SQL statements executed per request")
+                        .baseUnit("queries")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri.toString())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(queries);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jugovicm.DoctorAppointment.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between {@link #start()} and
+ * {@link #stop()}.
+ *
+ * <p>Registered as Hibernate's {@link StatementInspector}, so it sees every statement, including
+ * lazy loads and flushes. Statements issued outside a started count, or through plain JDBC, are not
+ * counted.</p>
+ */
+@Component
+public class QueryCounter implements StatementInspector {
+
+    private final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    public void start() {
+        count.set(new int[1]);
+    }
+
+    /**
+     * Ends the count on the current thread and returns the number of statements seen since {@link #start()}.
+     */
+    public int stop() {
+        int[] statements = count.get();
+        count.remove();
+        return statements == null ? 0 : statements[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] statements = count.get();
+        if (statements != null) {
+            statements[0]++;
+        }
+        return sql;
+    }
+}
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.PartitionKey;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -20,6 +22,9 @@ import java.util.UUID;
 @Builder
 @Table(name = "appointment")
 public class Appointment {
+    public static final int DEFAULT_DURATION_MINUTES = 30;
+    public static final int MAX_DURATION_MINUTES = 12 * 60;
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -37,14 +42,27 @@ public class Appointment {
     @JsonIgnore
     private Patient patient;
 
+    // Partition column: Hibernate adds it to the UPDATE and DELETE of the entity, so they scan one partition
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @PartitionKey
     @Column(name = "appointment_time", nullable = false)
     private LocalDateTime appointmentTime;
 
+    // Default keeps "add column ... not null" working on tables that already have rows
+    @ColumnDefault("30")
+    @Column(name = "duration_minutes", nullable = false)
+    private int durationMinutes;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private AppointmentStatus status;
 
     @Column(name = "created_by", nullable = false, updatable = false)
     private String createdBy; // Who is created appointment?
+
+    // Optimistic locking and ETags; the default fills rows that existed before the column
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
 }
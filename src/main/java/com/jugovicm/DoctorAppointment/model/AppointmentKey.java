@@ -0,0 +1,26 @@
+package com.jugovicm.DoctorAppointment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Start time of a live appointment by its ID, kept by triggers on {@code appointment} (V10).
+ * Queries by ID read it to reach the one partition that holds the appointment.
+ */
+@Getter
+@Entity
+@Immutable
+@NoArgsConstructor
+@Table(name = "appointment_id")
+public class AppointmentKey {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "appointment_time", nullable = false)
+    private LocalDateTime appointmentTime;
+}
@@ -0,0 +1,56 @@
+package com.jugovicm.DoctorAppointment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An appointment moved out of the partitioned {@code appointment} table by the archiver.
+ * Archived appointments are read-only and only looked up by ID.
+ */
+@Getter
+@Entity
+@Immutable
+@NoArgsConstructor
+@Table(name = "appointment_archive")
+public class ArchivedAppointment {
+
+    @Id
+    private UUID id;
+
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(
+            name = "doctor_appointments_archive",
+            joinColumns = @JoinColumn(name = "appointment_id"),
+            inverseJoinColumns = @JoinColumn(name = "doctor_id")
+    )
+    @ToString.Exclude
+    private List<Doctor> doctors = new ArrayList<>();
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    @ToString.Exclude
+    private Patient patient;
+
+    @Column(name = "appointment_time", nullable = false)
+    private LocalDateTime appointmentTime;
+
+    @Column(name = "duration_minutes", nullable = false)
+    private int durationMinutes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private AppointmentStatus status;
+
+    @Column(name = "created_by", nullable = false)
+    private String createdBy;
+
+    // Version the appointment had when it was archived, kept for its ETag
+    @Column(name = "version", nullable = false)
+    private long version;
+}
@@ -1,8 +1,12 @@
 package com.jugovicm.DoctorAppointment.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.jugovicm.DoctorAppointment.util.SearchText;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +19,8 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Table(name = "doctor")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "doctor")
 public class Doctor {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -29,8 +35,25 @@ public class Doctor {
     @Column(name = "last_name", nullable = false)
     private String lastName;
 
+    // Normalized "first last" name, served by a trigram (GIN) index for search
+    @Column(name = "search_name")
+    @JsonIgnore
+    private String searchName;
+
+    // Optimistic locking and ETags; the default fills rows that existed before the column
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
+
     @ManyToMany(mappedBy = "doctors", cascade = CascadeType.MERGE, fetch = FetchType.LAZY)
     @JsonIgnore
     @ToString.Exclude
     private List<Appointment> appointments = new ArrayList<>();
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchName() {
+        searchName = SearchText.normalize(firstName + " " + lastName);
+    }
 }
@@ -4,6 +4,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -15,6 +18,8 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Table(name = "patient")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "patient")
 public class Patient {
 
     @Id
@@ -34,6 +39,12 @@ public class Patient {
     @JsonProperty("date_of_birth")
     private LocalDate dateOfBirth;
 
+    // Optimistic locking and ETags; the default fills rows that existed before the column
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "patient")
     @JsonIgnore
     @ToString.Exclude
@@ -0,0 +1,39 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Payload of an outbox message and of the live feed. Created and updated appointments carry their new
+ * state; cancel and delete only carry the ID and the doctors, because they do not read the rest.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AppointmentEvent(
+        AppointmentEventType type,
+        UUID appointmentId,
+        String username,
+        Instant occurredAt,
+        LocalDateTime appointmentTime,
+        Integer durationMinutes,
+        AppointmentStatus status,
+        UUID patientId,
+        List<UUID> doctorIds) {
+
+    public static AppointmentEvent of(AppointmentEventType type, AppointmentResponseDTO appointment, String username) {
+        return new AppointmentEvent(type, appointment.getId(), username, Instant.now(),
+                appointment.getAppointmentTime(), appointment.getDurationMinutes(), appointment.getStatus(),
+                appointment.getPatient() != null ? appointment.getPatient().getId() : null,
+                appointment.getDoctors().stream().map(DoctorDTO::getId).toList());
+    }
+
+    public static AppointmentEvent of(AppointmentEventType type, UUID appointmentId, List<UUID> doctorIds, String username) {
+        return new AppointmentEvent(type, appointmentId, username, Instant.now(), null, null, null, null, doctorIds);
+    }
+}
@@ -0,0 +1,8 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+public enum AppointmentEventType {
+    CREATED,
+    UPDATED,
+    CANCELLED,
+    DELETED
+}
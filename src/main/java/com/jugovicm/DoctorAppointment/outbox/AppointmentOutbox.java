@@ -0,0 +1,65 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Writes appointment change events to {@code appointment_outbox}. The rows commit or roll back
+ * together with the change they describe; the {@link OutboxRelay} publishes them afterwards.
+ */
+@Component
+public class AppointmentOutbox {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO appointment_outbox (appointment_id, event_type, payload) VALUES (?, ?, ?::jsonb)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectWriter writer;
+
+    @Autowired
+    public AppointmentOutbox(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writer = objectMapper.writerFor(AppointmentEvent.class);
+    }
+
+    public void append(AppointmentEvent event) {
+        append(List.of(event));
+    }
+
+    /**
+     * Adds the events in one statement, or one batch for several.
+     *
+     * @throws IllegalStateException If no transaction is active: the events would not be atomic with the change.
+     */
+    public void append(List<AppointmentEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Outbox events must be written in the transaction of the change.");
+        }
+        List<Object[]> rows = events.stream()
+                .map(event -> new Object[]{event.appointmentId(), event.type().name(), toJson(event)})
+                .toList();
+        if (rows.size() == 1) {
+            jdbcTemplate.update(INSERT_SQL, rows.get(0));
+        } else {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    private String toJson(AppointmentEvent event) {
+        try {
+            return writer.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + event.type() + " event of appointment " + event.appointmentId(), e);
+        }
+    }
+}
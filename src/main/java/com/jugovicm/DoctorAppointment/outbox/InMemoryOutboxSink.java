@@ -0,0 +1,40 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent messages in memory, for tests and benchmarks.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final Deque<OutboxMessage> messages = new ArrayDeque<>();
+    private final int capacity;
+
+    public InMemoryOutboxSink(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxMessage> published) {
+        for (OutboxMessage message : published) {
+            if (messages.size() == capacity) {
+                messages.removeFirst();
+            }
+            messages.addLast(message);
+        }
+    }
+
+    /**
+     * The kept messages, oldest first.
+     */
+    public synchronized List<OutboxMessage> messages() {
+        return new ArrayList<>(messages);
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+    }
+}
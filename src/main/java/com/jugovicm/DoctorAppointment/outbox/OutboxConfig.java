@@ -0,0 +1,32 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Selects the {@link OutboxSink} with {@code outbox.sink}: {@code file} (default) or {@code memory}.
+ * An application-defined sink bean takes precedence over both.
+ */
+@Configuration
+public class OutboxConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(OutboxSink.class)
+    @ConditionalOnProperty(name = "outbox.sink", havingValue = "file", matchIfMissing = true)
+    public FileOutboxSink fileOutboxSink(@Value("${outbox.file.path:appointment-events.ndjson}") Path path) throws IOException {
+        return new FileOutboxSink(path);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(OutboxSink.class)
+    @ConditionalOnProperty(name = "outbox.sink", havingValue = "memory")
+    public InMemoryOutboxSink inMemoryOutboxSink(@Value("${outbox.memory.capacity:10000}") int capacity) {
+        return new InMemoryOutboxSink(capacity);
+    }
+}
@@ -0,0 +1,17 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of {@code appointment_outbox} as handed to an {@link OutboxSink}. The payload is the
+ * {@link AppointmentEvent} as JSON; the ID grows with insertion order and identifies the message
+ * for consumers that drop duplicates.
+ */
+public record OutboxMessage(
+        long id,
+        UUID appointmentId,
+        AppointmentEventType type,
+        String payload,
+        LocalDateTime createdAt) {
+}
@@ -0,0 +1,192 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.schedule.DoctorScheduleIndex;
+import com.jugovicm.DoctorAppointment.schedule.DoctorScheduleIndexLoader;
+import com.jugovicm.DoctorAppointment.service.AppointmentFeedService;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Feeds the live schedule feed and the doctor schedule index of this instance with the committed outbox
+ * events of every instance.
+ *
+ * <p>The {@code appointment_outbox} insert trigger announces each event on the {@code appointment_feed}
+ * channel; PostgreSQL delivers it to all listening sessions when the transaction commits, in commit order.
+ * The listener keeps its own connection outside the pool, since the session has to stay open.</p>
+ *
+ * <p>Notifications sent while the connection is down are lost, so after reconnecting the feed is reset
+ * and subscribers reload, and the schedule index is rebuilt. The same happens for an event too large for
+ * a notification. The index is also rebuilt after the first connect, for changes committed between the
+ * seed at startup and the {@code LISTEN}.</p>
+ */
+@Component
+public class OutboxNotificationListener implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxNotificationListener.class);
+
+    private static final String CHANNEL = "appointment_feed";
+    // How long to wait for notifications before checking that the connection is still alive
+    private static final int POLL_MILLIS = 10_000;
+
+    private record Notification(long id, AppointmentEvent event) {
+    }
+
+    private final DataSource dataSource;
+    private final AppointmentFeedService appointmentFeedService;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final DoctorScheduleIndexLoader doctorScheduleIndexLoader;
+    private final ObjectReader reader;
+    private final Duration reconnectInterval;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Connection connection;
+
+    @Autowired
+    public OutboxNotificationListener(DataSourceProperties properties, AppointmentFeedService appointmentFeedService,
+                                      DoctorScheduleIndex doctorScheduleIndex, DoctorScheduleIndexLoader doctorScheduleIndexLoader,
+                                      ObjectMapper objectMapper,
+                                      @Value("${feed.listener.reconnect-interval:5s}") Duration reconnectInterval) {
+        SimpleDriverDataSource dataSource = properties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build();
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("ApplicationName", "appointment-feed-listener"); // Shown in pg_stat_activity
+        dataSource.setConnectionProperties(connectionProperties);
+        this.dataSource = dataSource;
+        this.appointmentFeedService = appointmentFeedService;
+        this.doctorScheduleIndex = doctorScheduleIndex;
+        this.doctorScheduleIndexLoader = doctorScheduleIndexLoader;
+        this.reader = objectMapper.readerFor(Notification.class);
+        this.reconnectInterval = reconnectInterval;
+        this.thread = Thread.ofPlatform().name("appointment-feed-listener").daemon().unstarted(this::listen);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        thread.start();
+    }
+
+    private void listen() {
+        boolean missedNotifications = false;
+        while (running) {
+            try (Connection listening = dataSource.getConnection()) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (missedNotifications) {
+                    log.info("Listening for appointment changes again, the feed was reset.");
+                    appointmentFeedService.reset();
+                }
+                doctorScheduleIndexLoader.reload();
+                PGConnection pgConnection = listening.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        deliver(notifications);
+                    } else if (!listening.isValid(POLL_MILLIS / 1000)) {
+                        throw new SQLException("The connection is no longer valid.");
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Appointment feed listener lost its connection, reconnecting in {}: {}", reconnectInterval, e.getMessage());
+                missedNotifications = true;
+                try {
+                    Thread.sleep(reconnectInterval);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the events to the schedule index and the feed in notification order.
+     */
+    private void deliver(PGNotification[] notifications) {
+        List<AppointmentEvent> events = new ArrayList<>(notifications.length);
+        for (PGNotification notification : notifications) {
+            AppointmentEvent event = parse(notification.getParameter());
+            if (event == null) {
+                appointmentFeedService.publish(events);
+                events.clear();
+                appointmentFeedService.reset();
+                doctorScheduleIndexLoader.reload();
+            } else {
+                applyToSchedule(event);
+                events.add(event);
+            }
+        }
+        appointmentFeedService.publish(events);
+    }
+
+    /**
+     * Changes of this instance were already applied when they committed; applying them again changes nothing.
+     */
+    private void applyToSchedule(AppointmentEvent event) {
+        switch (event.type()) {
+            case CREATED, UPDATED -> {
+                if (event.status() == AppointmentStatus.SCHEDULED) {
+                    doctorScheduleIndex.put(event.appointmentId(), event.doctorIds(), event.appointmentTime(),
+                            event.durationMinutes());
+                } else {
+                    doctorScheduleIndex.release(event.appointmentId());
+                }
+            }
+            case CANCELLED, DELETED -> doctorScheduleIndex.release(event.appointmentId());
+        }
+    }
+
+    /**
+     * @return The event, or null if the notification does not carry it.
+     */
+    private AppointmentEvent parse(String payload) {
+        try {
+            Notification notification = reader.readValue(payload);
+            if (notification.event() == null) {
+                log.warn("Outbox event {} was too large for a notification, the feed was reset.", notification.id());
+            }
+            return notification.event();
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable appointment feed notification, the feed was reset: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        thread.interrupt();
+        Connection listening = connection;
+        if (listening != null) {
+            try {
+                listening.close(); // Ends a getNotifications() that is waiting
+            } catch (SQLException e) {
+                // Closing anyway
+            }
+        }
+    }
+}
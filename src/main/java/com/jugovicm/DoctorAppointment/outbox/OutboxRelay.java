@@ -0,0 +1,154 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains {@code appointment_outbox} into the {@link OutboxSink}.
+ *
+ * <p>Each batch is claimed with {@code FOR UPDATE SKIP LOCKED}, so several instances can relay at the
+ * same time without publishing the same rows. The batch is split into lanes by appointment and the
+ * lanes are published in parallel; events of one appointment stay in one lane and keep their order.
+ * The rows are deleted in the claiming transaction once every lane is acknowledged. If a lane fails
+ * or times out, the transaction rolls back and the whole batch is published again later
+ * (at-least-once delivery).</p>
+ *
+ * <p>Backpressure: the next batch is claimed only after the sink acknowledged the previous one, so a
+ * slow sink makes the backlog wait in the table instead of in memory. A run relays at most
+ * {@code outbox.relay.max-batches-per-run} batches and leaves the rest to the next run, so a large
+ * backlog does not keep a scheduler thread busy indefinitely.</p>
+ */
+@Component
+public class OutboxRelay implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String CLAIM_SQL =
+            "SELECT id, appointment_id, event_type, payload::text AS payload, created_at FROM appointment_outbox " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_SQL = "DELETE FROM appointment_outbox WHERE id = ANY (?)";
+
+    private static final RowMapper<OutboxMessage> ROW_MAPPER = (rs, rowNum) -> new OutboxMessage(
+            rs.getLong("id"),
+            rs.getObject("appointment_id", UUID.class),
+            AppointmentEventType.valueOf(rs.getString("event_type")),
+            rs.getString("payload"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final int parallelism;
+    private final int maxBatchesPerRun;
+    private final Duration publishTimeout;
+    private final ExecutorService executor;
+
+    @Autowired
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, OutboxSink sink,
+                       @Value("${outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${outbox.relay.parallelism:4}") int parallelism,
+                       @Value("${outbox.relay.max-batches-per-run:10}") int maxBatchesPerRun,
+                       @Value("${outbox.relay.publish-timeout:10s}") Duration publishTimeout) {
+        if (batchSize < 1 || parallelism < 1 || maxBatchesPerRun < 1) {
+            throw new IllegalArgumentException(
+                    "outbox.relay.batch-size, outbox.relay.parallelism and outbox.relay.max-batches-per-run must be at least 1.");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.publishTimeout = publishTimeout;
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("outbox-relay-", 1).daemon().factory());
+    }
+
+    @Scheduled(initialDelayString = "${outbox.relay.interval:1s}", fixedDelayString = "${outbox.relay.interval:1s}")
+    public void run() {
+        try {
+            int batches = 0;
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize && ++batches < maxBatchesPerRun);
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay stopped, the batch is retried in the next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims, publishes and deletes one batch in one transaction.
+     *
+     * @return Number of published messages, less than the batch size once the outbox is drained.
+     */
+    public int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxMessage> messages = jdbcTemplate.query(CLAIM_SQL, ROW_MAPPER, batchSize);
+            if (messages.isEmpty()) {
+                return 0;
+            }
+            publish(messages);
+            Long[] ids = messages.stream().map(OutboxMessage::id).toArray(Long[]::new);
+            jdbcTemplate.update(DELETE_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+            return messages.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+
+    private void publish(List<OutboxMessage> messages) {
+        Map<Integer, List<OutboxMessage>> lanes = new TreeMap<>();
+        for (OutboxMessage message : messages) {
+            lanes.computeIfAbsent(Math.floorMod(message.appointmentId().hashCode(), parallelism), lane -> new ArrayList<>())
+                    .add(message);
+        }
+        List<Future<?>> acknowledgements = lanes.values().stream()
+                .<Future<?>>map(lane -> executor.submit(() -> {
+                    sink.publish(lane);
+                    return null;
+                }))
+                .toList();
+        long deadline = System.nanoTime() + publishTimeout.toNanos();
+        try {
+            for (Future<?> acknowledgement : acknowledgements) {
+                acknowledgement.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Outbox sink failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Outbox sink did not acknowledge within " + publishTimeout + ".", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox messages.", e);
+        } finally {
+            acknowledgements.forEach(acknowledgement -> acknowledgement.cancel(true));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,19 @@
+package com.jugovicm.DoctorAppointment.outbox;
+
+import java.util.List;
+
+/**
+ * Where the {@link OutboxRelay} publishes appointment events. Define a bean of this type to replace
+ * the configured one (see {@code outbox.sink}).
+ */
+public interface OutboxSink {
+
+    /**
+     * Publishes the messages in the given order.
+     *
+     * <p>Called from several relay threads at once, each with the messages of different appointments.
+     * Returning acknowledges all of them. Throwing makes the relay retry the whole batch later, so
+     * a message can be published more than once.</p>
+     */
+    void publish(List<OutboxMessage> messages) throws Exception;
+}
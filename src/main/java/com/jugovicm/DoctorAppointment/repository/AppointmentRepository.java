@@ -1,31 +1,201 @@
 package com.jugovicm.DoctorAppointment.repository;
 
+import com.jugovicm.DoctorAppointment.dto.AppointmentRow;
+import com.jugovicm.DoctorAppointment.dto.AppointmentVersionRow;
+import com.jugovicm.DoctorAppointment.dto.CalendarRow;
+import com.jugovicm.DoctorAppointment.dto.DoctorBookingRow;
 import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, UUID> {
-    @EntityGraph(attributePaths = {"patient", "doctors"})
-    List<Appointment> findAll();
-    @EntityGraph(attributePaths = {"patient", "doctors"})
-    Optional<Appointment> findById(UUID id);
-    @EntityGraph(attributePaths = {"patient", "doctors"})
-    List<Appointment> findByPatient_Id(UUID patientId);
-    @EntityGraph(attributePaths = {"patient", "doctors"})
-    List<Appointment> findByDoctors_Id(UUID doctorId);
 
-    @EntityGraph(attributePaths = {"patient", "doctors"})
-    Page<Appointment> findAll(Pageable pageable);
+    // Flat read-only rows (one per appointment doctor), built without hydrating managed entities
+    String APPOINTMENT_ROW_SELECT = "SELECT new com.jugovicm.DoctorAppointment.dto.AppointmentRow(" +
+            "a.id, a.appointmentTime, a.durationMinutes, a.status, a.createdBy, " +
+            "p.id, p.firstName, p.lastName, p.middleName, p.dateOfBirth, " +
+            "d.id, d.username, d.firstName, d.lastName) " +
+            "FROM Appointment a JOIN a.patient p LEFT JOIN a.doctors d ";
+
+    // Lookup by ID with the start time read from appointment_id (V10): the subquery runs once, before the
+    // partitions are opened, so only the partition of that time is scanned instead of every monthly one
+    String BY_ID = "a.id = :id AND a.appointmentTime = (SELECT k.appointmentTime FROM AppointmentKey k WHERE k.id = :id)";
 
     @EntityGraph(attributePaths = {"patient", "doctors"})
-    Page<Appointment> findByDoctors_Id(UUID doctorId, Pageable pageable);
-}
+    @Query("SELECT a FROM Appointment a WHERE " + BY_ID)
+    Optional<Appointment> findById(@Param("id") UUID id);
+
+    // Live appointments only, one primary key read
+    @Query("SELECT COUNT(k) > 0 FROM AppointmentKey k WHERE k.id = :id")
+    boolean existsById(@Param("id") UUID id);
+
+    @Query(APPOINTMENT_ROW_SELECT + "WHERE " + BY_ID)
+    List<AppointmentRow> findRowsById(@Param("id") UUID id);
+
+    @Query(APPOINTMENT_ROW_SELECT + "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findAllRows();
+
+    @Query(APPOINTMENT_ROW_SELECT +
+            "WHERE a.id IN (SELECT da.id FROM Appointment da JOIN da.doctors dd WHERE dd.id = :doctorId) " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findRowsByDoctorId(@Param("doctorId") UUID doctorId);
+
+    @Query(APPOINTMENT_ROW_SELECT + "WHERE p.id = :patientId ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findRowsByPatientId(@Param("patientId") UUID patientId);
+
+    // Range filters: appointments starting in [from, to) with one of the statuses, as index range scans on
+    // appointment_time (idx_appointment_time_id, idx_appointment_status_time, idx_appointment_patient_time)
+    @Query(APPOINTMENT_ROW_SELECT +
+            "WHERE a.appointmentTime >= :from AND a.appointmentTime < :to AND a.status IN :statuses " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findRowsInRange(@Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to,
+                                         @Param("statuses") Collection<AppointmentStatus> statuses);
+
+    @Query(APPOINTMENT_ROW_SELECT +
+            "WHERE a.id IN (SELECT da.id FROM Appointment da JOIN da.doctors dd WHERE dd.id = :doctorId " +
+            "AND da.appointmentTime >= :from AND da.appointmentTime < :to AND da.status IN :statuses) " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findRowsByDoctorIdInRange(@Param("doctorId") UUID doctorId,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("to") LocalDateTime to,
+                                                   @Param("statuses") Collection<AppointmentStatus> statuses);
+
+    @Query(APPOINTMENT_ROW_SELECT +
+            "WHERE p.id = :patientId AND a.appointmentTime >= :from AND a.appointmentTime < :to AND a.status IN :statuses " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<AppointmentRow> findRowsByPatientIdInRange(@Param("patientId") UUID patientId,
+                                                    @Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to,
+                                                    @Param("statuses") Collection<AppointmentStatus> statuses);
+
+    // Agenda rows of several doctors, one per doctor and appointment, with just the columns a calendar shows
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.CalendarRow(d.id, a.id, a.appointmentTime, a.durationMinutes, " +
+            "a.status, p.id, p.firstName, p.lastName) " +
+            "FROM Appointment a JOIN a.doctors d JOIN a.patient p " +
+            "WHERE d.id IN :doctorIds AND a.appointmentTime >= :from AND a.appointmentTime < :to AND a.status IN :statuses " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<CalendarRow> findCalendarRows(@Param("doctorIds") Collection<UUID> doctorIds,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("statuses") Collection<AppointmentStatus> statuses);
+
+    // Versions of the appointment, its patient and its doctors, for the ETag without loading the rows
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.AppointmentVersionRow(a.version, p.version, d.id, d.version) " +
+            "FROM Appointment a JOIN a.patient p LEFT JOIN a.doctors d WHERE " + BY_ID)
+    List<AppointmentVersionRow> findVersionsById(@Param("id") UUID id);
 
+    // Change counter of the rows behind findRowsByDoctorId, kept by triggers (V9); 0 before the first change
+    @Query(value = "SELECT coalesce((SELECT version FROM doctor_schedule_version WHERE doctor_id = :doctorId), 0)",
+            nativeQuery = true)
+    long findScheduleVersionByDoctorId(@Param("doctorId") UUID doctorId);
+
+    // Doctors of an appointment from the join table alone, for change events of writes that do not load it
+    @Query(value = "SELECT doctor_id FROM doctor_appointments WHERE appointment_id = :id", nativeQuery = true)
+    List<UUID> findDoctorIdsById(@Param("id") UUID id);
+
+    // Per-doctor advisory locks held until the transaction ends (V11); taken before the first write of a booking
+    @Query(value = "SELECT lock_doctor_schedules(:doctorIds)", nativeQuery = true)
+    int lockDoctorSchedules(@Param("doctorIds") UUID[] doctorIds);
+
+    @Query(value = "SELECT lock_doctor_schedules(ARRAY(SELECT doctor_id FROM doctor_appointments WHERE appointment_id = :id))",
+            nativeQuery = true)
+    int lockDoctorSchedulesById(@Param("id") UUID id);
+
+    // Scheduled bookings of the doctors that intersect [from, to), for the overlap check of a booking. The range
+    // scan starts Appointment.MAX_DURATION_MINUTES before "from": nothing that starts earlier reaches into it.
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.DoctorBookingRow(a.id, d.id, a.appointmentTime, a.durationMinutes) " +
+            "FROM Appointment a JOIN a.doctors d " +
+            "WHERE d.id IN :doctorIds AND a.appointmentTime >= :earliestStart AND a.appointmentTime < :to " +
+            "AND a.appointmentTime + a.durationMinutes minute > :from " +
+            "AND a.status = com.jugovicm.DoctorAppointment.model.AppointmentStatus.SCHEDULED")
+    List<DoctorBookingRow> findScheduledBookings(@Param("doctorIds") Collection<UUID> doctorIds,
+                                                 @Param("earliestStart") LocalDateTime earliestStart,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
+
+    // Conditional writes: ownership check and change in one statement, 0 means missing or not the owner
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = com.jugovicm.DoctorAppointment.model.AppointmentStatus.CANCELLED, " +
+            "a.version = a.version + 1 WHERE " + BY_ID + " AND a.createdBy = :username")
+    int cancelIfOwner(@Param("id") UUID id, @Param("username") String username);
+
+    @Modifying
+    @Query("UPDATE Appointment a SET a.appointmentTime = :appointmentTime, a.version = a.version + 1 " +
+            "WHERE " + BY_ID + " AND a.createdBy = :username")
+    int rescheduleIfOwner(@Param("id") UUID id,
+                          @Param("username") String username,
+                          @Param("appointmentTime") LocalDateTime appointmentTime);
+
+    // Hibernate removes the doctor_appointments rows of the matched appointment first
+    @Modifying
+    @Query("DELETE FROM Appointment a WHERE " + BY_ID + " AND a.createdBy = :username")
+    int deleteIfOwner(@Param("id") UUID id, @Param("username") String username);
+
+    @Query(APPOINTMENT_ROW_SELECT + "WHERE a.id IN :ids")
+    List<AppointmentRow> findRowsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Paging over IDs only; an entity graph with the doctors collection would paginate in memory (HHH90003004)
+    @Query(value = "SELECT a.id FROM Appointment a",
+            countQuery = "SELECT COUNT(a) FROM Appointment a")
+    Page<UUID> findPageIds(Pageable pageable);
+
+    @Query(value = "SELECT a.id FROM Appointment a JOIN a.doctors d WHERE d.id = :doctorId",
+            countQuery = "SELECT COUNT(a) FROM Appointment a JOIN a.doctors d WHERE d.id = :doctorId")
+    Page<UUID> findPageIdsByDoctor(@Param("doctorId") UUID doctorId, Pageable pageable);
+
+    // Keyset (cursor) pagination on (appointment_time, id), no OFFSET and no COUNT query
+    @Query("SELECT a.id FROM Appointment a ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<UUID> findFirstPageIds(Limit limit);
+
+    @Query("SELECT a.id FROM Appointment a " +
+            "WHERE (a.appointmentTime, a.id) > (:appointmentTime, :id) " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<UUID> findPageIdsAfter(@Param("appointmentTime") LocalDateTime appointmentTime,
+                                @Param("id") UUID id,
+                                Limit limit);
+
+    @Query("SELECT a.id FROM Appointment a JOIN a.doctors d WHERE d.id = :doctorId " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<UUID> findFirstPageIdsByDoctor(@Param("doctorId") UUID doctorId, Limit limit);
+
+    @Query("SELECT a.id FROM Appointment a JOIN a.doctors d WHERE d.id = :doctorId " +
+            "AND (a.appointmentTime, a.id) > (:appointmentTime, :id) " +
+            "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<UUID> findPageIdsByDoctorAfter(@Param("doctorId") UUID doctorId,
+                                        @Param("appointmentTime") LocalDateTime appointmentTime,
+                                        @Param("id") UUID id,
+                                        Limit limit);
+
+    // Server-side cursor for exports; rows of one appointment are adjacent thanks to the ORDER BY
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(APPOINTMENT_ROW_SELECT + "ORDER BY a.appointmentTime ASC, a.id ASC")
+    Stream<AppointmentRow> streamAllRows();
+
+    // One row per doctor of every scheduled appointment starting at or after the given time, for seeding the
+    // in-memory schedule index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.DoctorBookingRow(a.id, d.id, a.appointmentTime, a.durationMinutes) " +
+            "FROM Appointment a JOIN a.doctors d " +
+            "WHERE a.status = com.jugovicm.DoctorAppointment.model.AppointmentStatus.SCHEDULED AND a.appointmentTime >= :from")
+    Stream<DoctorBookingRow> streamScheduledBookings(@Param("from") LocalDateTime from);
+}
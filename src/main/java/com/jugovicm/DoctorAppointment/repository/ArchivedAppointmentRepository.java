@@ -0,0 +1,28 @@
+package com.jugovicm.DoctorAppointment.repository;
+
+import com.jugovicm.DoctorAppointment.dto.AppointmentRow;
+import com.jugovicm.DoctorAppointment.dto.AppointmentVersionRow;
+import com.jugovicm.DoctorAppointment.model.ArchivedAppointment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+// Lookups by ID in the cold tables, with the same rows as the live ones in AppointmentRepository
+@Repository
+public interface ArchivedAppointmentRepository extends JpaRepository<ArchivedAppointment, UUID> {
+
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.AppointmentRow(" +
+            "a.id, a.appointmentTime, a.durationMinutes, a.status, a.createdBy, " +
+            "p.id, p.firstName, p.lastName, p.middleName, p.dateOfBirth, " +
+            "d.id, d.username, d.firstName, d.lastName) " +
+            "FROM ArchivedAppointment a JOIN a.patient p LEFT JOIN a.doctors d WHERE a.id = :id")
+    List<AppointmentRow> findRowsById(@Param("id") UUID id);
+
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.AppointmentVersionRow(a.version, p.version, d.id, d.version) " +
+            "FROM ArchivedAppointment a JOIN a.patient p LEFT JOIN a.doctors d WHERE a.id = :id")
+    List<AppointmentVersionRow> findVersionsById(@Param("id") UUID id);
+}
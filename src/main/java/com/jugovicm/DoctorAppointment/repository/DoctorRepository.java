@@ -1,8 +1,13 @@
 package com.jugovicm.DoctorAppointment.repository;
 
 import com.jugovicm.DoctorAppointment.model.Doctor;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,13 +17,36 @@ import java.util.UUID;
 
 @Repository
 public interface DoctorRepository extends JpaRepository<Doctor, UUID> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Doctor> findByUsername(String username);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByUsername(String username);
-    @Query("SELECT d FROM Doctor d WHERE " +
-            "LOWER(d.firstName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(d.lastName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(d.username) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(CONCAT(d.firstName, ' ', d.lastName)) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(CONCAT(d.lastName, ' ', d.firstName)) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
-    List<Doctor> searchDoctors(@Param("searchTerm") String searchTerm);
+    // Every predicate can be served by the pg_trgm GIN indexes on search_name and lower(username).
+    // :term is normalized (see SearchText), :pattern is the same term with LIKE wildcards escaped.
+    @Query(value = "SELECT d.* FROM doctor d WHERE " +
+            "d.search_name LIKE '%' || :pattern || '%' OR " +
+            "d.search_name % :term OR " +
+            ":term <% d.search_name OR " +
+            "lower(d.username) LIKE '%' || :pattern || '%' " +
+            "ORDER BY GREATEST(similarity(d.search_name, :term), " +
+            "word_similarity(:term, d.search_name), " +
+            "similarity(lower(d.username), :term)) DESC, d.last_name, d.first_name, d.id",
+            nativeQuery = true)
+    List<Doctor> searchDoctors(@Param("term") String term, @Param("pattern") String pattern, Pageable pageable);
+
+    // Stops at the first entry of idx_doctor_appointments_doctor instead of loading the appointments collection;
+    // archived appointments count too, they still reference the doctor
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM doctor_appointments WHERE doctor_id = :id) " +
+            "OR EXISTS (SELECT 1 FROM doctor_appointments_archive WHERE doctor_id = :id)", nativeQuery = true)
+    boolean hasAppointments(@Param("id") UUID id);
+
+    // One set-based DELETE (JPQL would add a no-op DELETE on doctor_appointments first). The native
+    // space makes Hibernate invalidate only the doctor region and the cached username queries.
+    // created_at is compared with the database clock, which also set it.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "doctor"))
+    @Query(value = "DELETE FROM doctor d WHERE d.created_at < now() - make_interval(secs => :minAgeSeconds) " +
+            "AND NOT EXISTS (SELECT 1 FROM doctor_appointments da WHERE da.doctor_id = d.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM doctor_appointments_archive da WHERE da.doctor_id = d.id)", nativeQuery = true)
+    int deleteAllWithoutAppointments(@Param("minAgeSeconds") long minAgeSeconds);
 }
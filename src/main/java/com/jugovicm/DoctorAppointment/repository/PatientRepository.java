@@ -1,14 +1,20 @@
 package com.jugovicm.DoctorAppointment.repository;
 
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
 import com.jugovicm.DoctorAppointment.model.Patient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
@@ -21,4 +27,30 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
             "LOWER(CONCAT(p.firstName, ' ', p.lastName)) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(CONCAT(p.lastName, ' ', p.firstName)) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<Patient> searchPatients(@Param("searchTerm") String searchTerm);
+
+    // Cursor over all patients as DTOs (no managed entities), used to build the in-memory name index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.jugovicm.DoctorAppointment.dto.PatientDTO(p.id, p.firstName, p.lastName, p.middleName, p.dateOfBirth) " +
+            "FROM Patient p")
+    Stream<PatientDTO> streamAllAsDTO();
+
+    // Stops at the first entry of idx_appointment_patient_time instead of loading the appointments collection;
+    // archived appointments count too, they still reference the patient
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM appointment WHERE patient_id = :id) " +
+            "OR EXISTS (SELECT 1 FROM appointment_archive WHERE patient_id = :id)", nativeQuery = true)
+    boolean hasAppointments(@Param("id") UUID id);
+
+    // Locks the patients to delete, so none gets an appointment before the DELETE; created_at is compared with
+    // the database clock, which also set it
+    @Query(value = "SELECT p.id FROM patient p WHERE p.created_at < now() - make_interval(secs => :minAgeSeconds) " +
+            "AND NOT EXISTS (SELECT 1 FROM appointment a WHERE a.patient_id = p.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM appointment_archive a WHERE a.patient_id = p.id) FOR UPDATE", nativeQuery = true)
+    List<UUID> lockAllWithoutAppointments(@Param("minAgeSeconds") long minAgeSeconds);
+
+    // One set-based DELETE of the locked patients. The native space makes Hibernate invalidate the patient
+    // region and the cached queries on patient.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "patient"))
+    @Query(value = "DELETE FROM patient WHERE id = ANY (:ids)", nativeQuery = true)
+    int deleteAllByIds(@Param("ids") UUID[] ids);
 }
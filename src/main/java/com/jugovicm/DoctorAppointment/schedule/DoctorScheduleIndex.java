@@ -0,0 +1,443 @@
+package com.jugovicm.DoctorAppointment.schedule;
+
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the booked intervals of every doctor: the fast path that rejects double bookings
+ * this instance already knows about, and the source of availability searches.
+ *
+ * <p>It is not the guard against double bookings. Other instances book the same doctors, so every write
+ * that books a doctor also locks the doctor's schedule in the database and checks for overlaps there.
+ * Committed changes of all instances reach the index through the live feed ({@link #put}, {@link #release}),
+ * and it only holds bookings that have not ended yet.</p>
+ *
+ * <p>Each doctor's intervals are kept in parallel primitive arrays sorted by start minute.
+ * Durations are capped at {@link Appointment#MAX_DURATION_MINUTES}, so only intervals starting
+ * less than that before a new interval can reach into it: an overlap check is a binary search
+ * followed by a short backward scan, O(log n) for any realistic schedule.</p>
+ *
+ * <p>Doctors are guarded by striped locks. Bookings for unrelated doctors proceed in parallel;
+ * an appointment with several doctors takes their stripes in ascending order, so two such
+ * bookings cannot deadlock.</p>
+ *
+ * <p>Only scheduled appointments occupy a doctor. Times are stored as minutes since the epoch,
+ * with appointment times read as UTC.</p>
+ */
+@Component
+public class DoctorScheduleIndex {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = IntStream.range(0, STRIPES)
+            .mapToObj(i -> new ReentrantLock())
+            .toArray(ReentrantLock[]::new);
+
+    // Each schedule is guarded by the stripe of its doctor
+    private final Map<UUID, Schedule> schedules = new ConcurrentHashMap<>();
+    private final Map<UUID, Booking> bookings = new ConcurrentHashMap<>();
+
+    /**
+     * Books the interval for every doctor of the appointment.
+     *
+     * @throws IllegalArgumentException if one of the doctors is already booked in that interval;
+     *                                  nothing is booked in that case.
+     */
+    public void reserve(UUID appointmentId, Collection<UUID> doctorIds, LocalDateTime start, int durationMinutes) {
+        Booking booking = new Booking(doctorIds.stream().distinct().toArray(UUID[]::new),
+                toMinutes(start), toMinutes(start) + durationMinutes);
+
+        int[] stripes = lock(booking.doctorIds);
+        try {
+            checkFree(booking, appointmentId);
+            add(appointmentId, booking);
+        } finally {
+            unlock(stripes);
+        }
+    }
+
+    /**
+     * Moves a booking to another key, e.g. from a placeholder taken before the appointment had an ID.
+     */
+    public void rekey(UUID fromId, UUID toId) {
+        while (true) {
+            Booking booking = bookings.get(fromId);
+            if (booking == null) {
+                return;
+            }
+            int[] stripes = lock(booking.doctorIds);
+            try {
+                if (bookings.remove(fromId, booking)) {
+                    for (UUID doctorId : booking.doctorIds) {
+                        schedules.get(doctorId).rekey(fromId, booking.start, toId);
+                    }
+                    bookings.put(toId, booking);
+                    return;
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Books a new interval for an appointment, ignoring its own current interval in the check.
+     * The current interval stays booked until the returned move is committed, so no one else can
+     * take it while the change may still roll back.
+     *
+     * @throws IllegalArgumentException if one of the doctors is busy in the new interval;
+     *                                  nothing changes in that case.
+     */
+    public Move move(UUID appointmentId, Collection<UUID> doctorIds, LocalDateTime start, int durationMinutes) {
+        Booking moved = new Booking(doctorIds.stream().distinct().toArray(UUID[]::new),
+                toMinutes(start), toMinutes(start) + durationMinutes);
+
+        while (true) {
+            Booking previous = bookings.get(appointmentId);
+            int[] stripes = lock(previous == null ? moved.doctorIds : concat(previous.doctorIds, moved.doctorIds));
+            try {
+                if (bookings.get(appointmentId) != previous) {
+                    continue; // Changed before we got the locks; retry with the current doctors
+                }
+                checkFree(moved, appointmentId);
+                add(appointmentId, moved);
+                return new Move(appointmentId, previous, moved);
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Sets the booking of a committed appointment, replacing its previous one, without checking for
+     * overlaps: the database has already accepted it.
+     */
+    public void put(UUID appointmentId, Collection<UUID> doctorIds, LocalDateTime start, int durationMinutes) {
+        Booking booking = new Booking(doctorIds.stream().distinct().toArray(UUID[]::new),
+                toMinutes(start), toMinutes(start) + durationMinutes);
+
+        while (true) {
+            Booking previous = bookings.get(appointmentId);
+            int[] stripes = lock(previous == null ? booking.doctorIds : concat(previous.doctorIds, booking.doctorIds));
+            try {
+                if (bookings.get(appointmentId) != previous) {
+                    continue; // Changed before we got the locks; retry with the current doctors
+                }
+                if (previous != null) {
+                    removeIntervals(appointmentId, previous);
+                }
+                add(appointmentId, booking);
+                return;
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Frees the interval of the appointment. Does nothing if it is not booked.
+     */
+    public void release(UUID appointmentId) {
+        while (true) {
+            Booking booking = bookings.get(appointmentId);
+            if (booking == null) {
+                return;
+            }
+            int[] stripes = lock(booking.doctorIds);
+            try {
+                if (bookings.remove(appointmentId, booking)) {
+                    removeIntervals(appointmentId, booking);
+                    return;
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    /**
+     * Passes every booked interval of the doctor that intersects [fromMinute, toMinute) to the consumer,
+     * in order of start. Times are minutes since the epoch, see {@link #toMinutes}.
+     */
+    public void forEachBusy(UUID doctorId, long fromMinute, long toMinute, BusyIntervalConsumer consumer) {
+        int[] stripes = lock(new UUID[]{doctorId});
+        try {
+            Schedule schedule = schedules.get(doctorId);
+            if (schedule != null) {
+                schedule.forEachIntersecting(fromMinute, toMinute, consumer);
+            }
+        } finally {
+            unlock(stripes);
+        }
+    }
+
+    /**
+     * Frees the intervals that ended at or before the given minute (see {@link #toMinutes}). Bookings in
+     * the past are left to the check in the database.
+     *
+     * @return Number of freed bookings.
+     */
+    public int removeEndedBefore(long minute) {
+        int removed = 0;
+        for (Map.Entry<UUID, Booking> entry : bookings.entrySet()) {
+            Booking booking = entry.getValue();
+            if (booking.end > minute) {
+                continue;
+            }
+            int[] stripes = lock(booking.doctorIds);
+            try {
+                if (bookings.remove(entry.getKey(), booking)) {
+                    removeIntervals(entry.getKey(), booking);
+                    removed++;
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return bookings.size();
+    }
+
+    /**
+     * Clears the index before it is seeded again.
+     */
+    public void clear() {
+        schedules.clear();
+        bookings.clear();
+    }
+
+    /**
+     * Seeds one doctor of a stored appointment without checking for overlaps: double bookings that
+     * already exist in the database are kept as they are. A doctor the appointment already holds, e.g.
+     * booked while seeding, is skipped.
+     */
+    public void load(UUID appointmentId, UUID doctorId, LocalDateTime start, int durationMinutes) {
+        long from = toMinutes(start);
+        long to = from + durationMinutes;
+        int[] stripes = lock(new UUID[]{doctorId});
+        try {
+            Booking known = bookings.get(appointmentId);
+            if (known != null && Arrays.asList(known.doctorIds).contains(doctorId)) {
+                return;
+            }
+            bookings.merge(appointmentId, new Booking(new UUID[]{doctorId}, from, to),
+                    (existing, added) -> new Booking(concat(existing.doctorIds, added.doctorIds), from, to));
+            schedules.computeIfAbsent(doctorId, id -> new Schedule()).insert(appointmentId, from, to);
+        } finally {
+            unlock(stripes);
+        }
+    }
+
+    private void checkFree(Booking booking, UUID appointmentId) {
+        for (UUID doctorId : booking.doctorIds) {
+            Schedule schedule = schedules.get(doctorId);
+            if (schedule != null && schedule.overlaps(booking.start, booking.end, appointmentId)) {
+                throw new IllegalArgumentException("Doctor with ID " + doctorId + " is already booked between "
+                        + toDateTime(booking.start) + " and " + toDateTime(booking.end) + ".");
+            }
+        }
+    }
+
+    private void add(UUID appointmentId, Booking booking) {
+        for (UUID doctorId : booking.doctorIds) {
+            schedules.computeIfAbsent(doctorId, id -> new Schedule()).insert(appointmentId, booking.start, booking.end);
+        }
+        bookings.put(appointmentId, booking);
+    }
+
+    private void removeIntervals(UUID appointmentId, Booking booking) {
+        for (UUID doctorId : booking.doctorIds) {
+            Schedule schedule = schedules.get(doctorId);
+            if (schedule != null) {
+                schedule.remove(appointmentId, booking.start);
+            }
+        }
+    }
+
+    /**
+     * Locks the stripes of the given doctors in ascending order and returns them for {@link #unlock}.
+     */
+    private int[] lock(UUID[] doctorIds) {
+        int[] stripes = Arrays.stream(doctorIds)
+                .mapToInt(id -> Math.floorMod(id.hashCode(), STRIPES))
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    private void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    private static UUID[] concat(UUID[] first, UUID[] second) {
+        return Stream.concat(Arrays.stream(first), Arrays.stream(second)).distinct().toArray(UUID[]::new);
+    }
+
+    public static long toMinutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    public static LocalDateTime toDateTime(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    public interface BusyIntervalConsumer {
+        void accept(long startMinute, long endMinute);
+    }
+
+    /**
+     * A new interval booked by {@link #move} while the old one is still held.
+     */
+    public final class Move {
+        private final UUID appointmentId;
+        private final Booking previous; // null if the appointment was not booked
+        private final Booking moved;
+
+        private Move(UUID appointmentId, Booking previous, Booking moved) {
+            this.appointmentId = appointmentId;
+            this.previous = previous;
+            this.moved = moved;
+        }
+
+        /**
+         * Frees the old interval.
+         */
+        public void commit() {
+            if (previous == null) {
+                return;
+            }
+            int[] stripes = lock(previous.doctorIds);
+            try {
+                removeIntervals(appointmentId, previous);
+            } finally {
+                unlock(stripes);
+            }
+        }
+
+        /**
+         * Frees the new interval and restores the old one as the appointment's booking.
+         */
+        public void rollback() {
+            int[] stripes = lock(previous == null ? moved.doctorIds : concat(previous.doctorIds, moved.doctorIds));
+            try {
+                removeIntervals(appointmentId, moved);
+                if (previous != null) {
+                    bookings.put(appointmentId, previous);
+                } else {
+                    bookings.remove(appointmentId, moved);
+                }
+            } finally {
+                unlock(stripes);
+            }
+        }
+    }
+
+    private record Booking(UUID[] doctorIds, long start, long end) {
+    }
+
+    /**
+     * Booked intervals of one doctor, sorted by start.
+     */
+    private static final class Schedule {
+        private long[] starts = new long[8];
+        private long[] ends = new long[8];
+        private UUID[] appointmentIds = new UUID[8];
+        private int size;
+
+        /**
+         * Whether [from, to) intersects a booked interval of another appointment.
+         */
+        private boolean overlaps(long from, long to, UUID ignoredAppointmentId) {
+            // Intervals starting at or after "to" cannot overlap; scan back from the last one before it
+            long earliestStart = from - Appointment.MAX_DURATION_MINUTES;
+            for (int i = firstStartAtOrAfter(to) - 1; i >= 0 && starts[i] >= earliestStart; i--) {
+                if (ends[i] > from && !appointmentIds[i].equals(ignoredAppointmentId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void forEachIntersecting(long from, long to, BusyIntervalConsumer consumer) {
+            int end = firstStartAtOrAfter(to);
+            for (int i = firstStartAtOrAfter(from - Appointment.MAX_DURATION_MINUTES); i < end; i++) {
+                if (ends[i] > from) {
+                    consumer.accept(starts[i], ends[i]);
+                }
+            }
+        }
+
+        private void insert(UUID appointmentId, long from, long to) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                appointmentIds = Arrays.copyOf(appointmentIds, size * 2);
+            }
+            int at = firstStartAtOrAfter(from + 1);
+            System.arraycopy(starts, at, starts, at + 1, size - at);
+            System.arraycopy(ends, at, ends, at + 1, size - at);
+            System.arraycopy(appointmentIds, at, appointmentIds, at + 1, size - at);
+            starts[at] = from;
+            ends[at] = to;
+            appointmentIds[at] = appointmentId;
+            size++;
+        }
+
+        private void remove(UUID appointmentId, long from) {
+            // Several intervals can share a start; look among them for the appointment
+            for (int i = firstStartAtOrAfter(from); i < size && starts[i] == from; i++) {
+                if (appointmentIds[i].equals(appointmentId)) {
+                    System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+                    System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+                    System.arraycopy(appointmentIds, i + 1, appointmentIds, i, size - i - 1);
+                    appointmentIds[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        private void rekey(UUID appointmentId, long from, UUID newAppointmentId) {
+            for (int i = firstStartAtOrAfter(from); i < size && starts[i] == from; i++) {
+                if (appointmentIds[i].equals(appointmentId)) {
+                    appointmentIds[i] = newAppointmentId;
+                    return;
+                }
+            }
+        }
+
+        private int firstStartAtOrAfter(long minute) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < minute) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
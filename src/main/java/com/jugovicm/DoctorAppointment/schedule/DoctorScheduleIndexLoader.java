@@ -0,0 +1,72 @@
+package com.jugovicm.DoctorAppointment.schedule;
+
+import com.jugovicm.DoctorAppointment.dto.DoctorBookingRow;
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Seeds the doctor schedule index from the database while the context starts, before the web server
+ * accepts requests, so the fast path knows the existing bookings from the first request on.
+ *
+ * <p>Only bookings that may not have ended yet are loaded, and ended ones are dropped periodically:
+ * the index serves new bookings and availability, which lie ahead.</p>
+ */
+@Component
+public class DoctorScheduleIndexLoader implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(DoctorScheduleIndexLoader.class);
+
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public DoctorScheduleIndexLoader(AppointmentRepository appointmentRepository, DoctorScheduleIndex doctorScheduleIndex,
+                                     PlatformTransactionManager transactionManager) {
+        this.appointmentRepository = appointmentRepository;
+        this.doctorScheduleIndex = doctorScheduleIndex;
+        // Not read-only: with read replicas (ReadReplicaConfig) that would read from one that may lag behind
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the database, e.g. after changes may have been missed. Bookings checked while
+     * it is incomplete are still caught by the check in the database.
+     */
+    public synchronized void reload() {
+        long started = System.nanoTime();
+        // Appointments that started earlier have ended, durations are capped
+        LocalDateTime from = LocalDateTime.now().minusMinutes(Appointment.MAX_DURATION_MINUTES);
+        doctorScheduleIndex.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<DoctorBookingRow> rows = appointmentRepository.streamScheduledBookings(from)) {
+                rows.forEach(row -> doctorScheduleIndex.load(
+                        row.appointmentId(), row.doctorId(), row.appointmentTime(), row.durationMinutes()));
+            }
+        });
+        log.info("Doctor schedule index built with {} appointments in {} ms.",
+                doctorScheduleIndex.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Scheduled(initialDelayString = "${schedule.index.prune-interval:1h}", fixedDelayString = "${schedule.index.prune-interval:1h}")
+    public void prune() {
+        int removed = doctorScheduleIndex.removeEndedBefore(DoctorScheduleIndex.toMinutes(LocalDateTime.now()));
+        log.debug("Dropped {} ended appointments from the doctor schedule index.", removed);
+    }
+}
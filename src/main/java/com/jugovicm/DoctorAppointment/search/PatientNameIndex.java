@@ -0,0 +1,332 @@
+package com.jugovicm.DoctorAppointment.search;
+
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.util.SearchText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process trigram index over patient names.
+ *
+ * <p>Every patient occupies an int slot; each trigram of its normalized names maps to a sorted
+ * posting list of slots. A search intersects the posting lists of the term's trigrams and verifies
+ * the few remaining candidates, so it never touches the database. Updates tombstone the old slot
+ * and append a new one, which keeps posting lists sorted; tombstones are compacted away once they
+ * make up half of the slots.</p>
+ *
+ * <p>The index is cold until the first {@link #rebuild} completes; callers fall back to the database
+ * while {@link #isReady()} is false.</p>
+ */
+@Component
+public class PatientNameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientNameIndex.class);
+
+    private static final int GRAM = 3;
+    private static final int MIN_SLOTS_TO_COMPACT = 1024;
+
+    private static final Comparator<Match> BEST_FIRST = Comparator
+            .comparingInt(Match::score)
+            .thenComparing(match -> match.entry().lastName)
+            .thenComparing(match -> match.entry().firstName)
+            .thenComparing(match -> match.entry().id);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Snapshot current; // null while cold
+    private List<Consumer<Snapshot>> pendingChanges; // recorded while a rebuild is running
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return current != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best matching patients, at most {@code limit}.
+     * Exact name matches rank before prefix matches, which rank before substring matches.
+     */
+    public List<PatientDTO> search(String searchTerm, int limit) {
+        String term = SearchText.normalize(searchTerm);
+        PriorityQueue<Match> top = new PriorityQueue<>(BEST_FIRST.reversed());
+
+        lock.readLock().lock();
+        try {
+            if (current == null) {
+                throw new IllegalStateException("Patient name index is not built yet.");
+            }
+            if (term.length() < GRAM) {
+                // Too short for trigrams: scan live slots (names only, no database access)
+                for (int slot = 0; slot < current.size; slot++) {
+                    collect(current.entries[slot], term, limit, top);
+                }
+            } else {
+                for (int slot : current.candidates(term)) {
+                    collect(current.entries[slot], term, limit, top);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // The queue polls the worst match first
+        List<PatientDTO> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().entry().toDTO());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Adds the patient or replaces its previous names.
+     */
+    public void put(PatientDTO patient) {
+        Entry entry = new Entry(patient);
+        apply(snapshot -> snapshot.put(entry));
+    }
+
+    public void putAll(List<PatientDTO> patients) {
+        List<Entry> entries = patients.stream().map(Entry::new).toList();
+        apply(snapshot -> entries.forEach(snapshot::put));
+    }
+
+    public void remove(UUID patientId) {
+        apply(snapshot -> snapshot.remove(patientId));
+    }
+
+    public void removeAll(List<UUID> patientIds) {
+        apply(snapshot -> patientIds.forEach(snapshot::remove));
+    }
+
+    /**
+     * Replaces the index with the given patients. Changes made while the rebuild runs are replayed
+     * on the new index before it goes live.
+     */
+    public void rebuild(Iterable<PatientDTO> patients) {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Snapshot rebuilt = new Snapshot();
+        for (PatientDTO patient : patients) {
+            rebuilt.put(new Entry(patient));
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            pendingChanges = null;
+            current = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Patient name index built with {} patients.", rebuilt.slotById.size());
+    }
+
+    private void apply(Consumer<Snapshot> change) {
+        lock.writeLock().lock();
+        try {
+            if (current != null) {
+                change.accept(current);
+                if (current.deleted * 2 > current.size && current.size >= MIN_SLOTS_TO_COMPACT) {
+                    current = current.compact();
+                }
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void collect(Entry entry, String term, int limit, PriorityQueue<Match> top) {
+        if (entry == null || !entry.text.contains(term)) {
+            return; // Tombstone or trigram false positive
+        }
+        Match match = new Match(entry, entry.score(term));
+        if (top.size() < limit) {
+            top.add(match);
+        } else if (BEST_FIRST.compare(match, top.peek()) < 0) {
+            top.poll();
+            top.add(match);
+        }
+    }
+
+    private static long gramKey(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private record Match(Entry entry, int score) {
+    }
+
+    /**
+     * Names of one patient in normalized form.
+     */
+    private static final class Entry {
+        private final UUID id;
+        private final String firstName;
+        private final String middleName;
+        private final String lastName;
+        private final LocalDate dateOfBirth;
+        // "first middle last|first last|last first": every name order the database search matched
+        private final String text;
+        private final String[] fullNames; // The three name orders
+        private final String[] words; // First, middle and last name
+
+        private Entry(PatientDTO patient) {
+            this.id = patient.getId();
+            this.firstName = patient.getFirstName();
+            this.middleName = patient.getMiddleName();
+            this.lastName = patient.getLastName();
+            this.dateOfBirth = patient.getDateOfBirth();
+            String first = SearchText.normalize(firstName);
+            String middle = SearchText.normalize(middleName);
+            String last = SearchText.normalize(lastName);
+            this.text = first + " " + middle + " " + last + "|" + first + " " + last + "|" + last + " " + first;
+            this.fullNames = text.split("\\|");
+            this.words = new String[]{first, middle, last};
+        }
+
+        /**
+         * 0 = the term equals a full name ("john smith") or one of the names, 1 = one of them starts with it,
+         * 2 = substring match.
+         */
+        private int score(String term) {
+            int best = 2;
+            for (String[] names : new String[][]{fullNames, words}) {
+                for (String name : names) {
+                    if (name.equals(term)) {
+                        return 0;
+                    }
+                    if (name.startsWith(term)) {
+                        best = 1;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private PatientDTO toDTO() {
+            PatientDTO dto = new PatientDTO();
+            dto.setId(id);
+            dto.setFirstName(firstName);
+            dto.setMiddleName(middleName);
+            dto.setLastName(lastName);
+            dto.setDateOfBirth(dateOfBirth);
+            return dto;
+        }
+    }
+
+    /**
+     * Growable sorted list of slots. Slots are only ever appended in increasing order.
+     */
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        private void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return; // Same trigram twice in one entry
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    private static final class Snapshot {
+        private Entry[] entries = new Entry[1024];
+        private int size;
+        private int deleted;
+        private final Map<UUID, Integer> slotById = new HashMap<>();
+        private final Map<Long, Postings> postings = new HashMap<>();
+
+        private void put(Entry entry) {
+            remove(entry.id);
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            int slot = size++;
+            entries[slot] = entry;
+            slotById.put(entry.id, slot);
+            for (int i = 0; i + GRAM <= entry.text.length(); i++) {
+                postings.computeIfAbsent(gramKey(entry.text, i), key -> new Postings()).add(slot);
+            }
+        }
+
+        private void remove(UUID id) {
+            Integer slot = slotById.remove(id);
+            if (slot != null) {
+                entries[slot] = null; // Tombstone; posting lists keep the slot until compaction
+                deleted++;
+            }
+        }
+
+        /**
+         * Slots containing every trigram of the term, from the intersection of the posting lists.
+         */
+        private int[] candidates(String term) {
+            List<Postings> lists = new ArrayList<>();
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                Postings list = postings.get(gramKey(term, i));
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            int[] result = Arrays.copyOf(lists.get(0).slots, lists.get(0).size);
+            int resultSize = result.length;
+            for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+                Postings other = lists.get(l);
+                int kept = 0;
+                int j = 0;
+                for (int i = 0; i < resultSize; i++) {
+                    int slot = result[i];
+                    while (j < other.size && other.slots[j] < slot) {
+                        j++;
+                    }
+                    if (j < other.size && other.slots[j] == slot) {
+                        result[kept++] = slot;
+                    }
+                }
+                resultSize = kept;
+            }
+            return Arrays.copyOf(result, resultSize);
+        }
+
+        private Snapshot compact() {
+            Snapshot compacted = new Snapshot();
+            for (int slot = 0; slot < size; slot++) {
+                if (entries[slot] != null) {
+                    compacted.put(entries[slot]);
+                }
+            }
+            return compacted;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.jugovicm.DoctorAppointment.search;
+
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+/**
+ * Builds the patient name index in the background once the application has started.
+ * Until it finishes, patient search is answered by the database.
+ */
+@Component
+public class PatientNameIndexLoader {
+
+    private final PatientRepository patientRepository;
+    private final PatientNameIndex patientNameIndex;
+
+    @Autowired
+    public PatientNameIndexLoader(PatientRepository patientRepository, PatientNameIndex patientNameIndex) {
+        this.patientRepository = patientRepository;
+        this.patientNameIndex = patientNameIndex;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional // Not read-only: with read replicas (ReadReplicaConfig) that would read from one that may lag behind
+    public void loadOnStartup() {
+        try (Stream<PatientDTO> patients = patientRepository.streamAllAsDTO()) {
+            patientNameIndex.rebuild(patients::iterator);
+        }
+    }
+}
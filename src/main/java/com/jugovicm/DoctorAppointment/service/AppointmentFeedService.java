@@ -0,0 +1,29 @@
+package com.jugovicm.DoctorAppointment.service;
+
+import com.jugovicm.DoctorAppointment.outbox.AppointmentEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface AppointmentFeedService {
+
+    /**
+     * Opens a Server-Sent Events stream of the changes to one doctor's appointments.
+     *
+     * @param doctorId    The doctor to follow.
+     * @param lastEventId The {@code Last-Event-ID} of a reconnecting client, or null: changes after it
+     *                    are sent first, or a {@code RESET} event if they are no longer kept.
+     */
+    SseEmitter subscribe(UUID doctorId, String lastEventId);
+
+    /**
+     * Hands committed changes to the subscribers of their doctors without waiting for them.
+     */
+    void publish(List<AppointmentEvent> events);
+
+    /**
+     * Tells every subscriber to reload, for when changes may have been missed, and forgets the buffered ones.
+     */
+    void reset();
+}
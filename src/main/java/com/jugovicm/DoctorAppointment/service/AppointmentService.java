@@ -1,14 +1,20 @@
 package com.jugovicm.DoctorAppointment.service;
 
+import com.jugovicm.DoctorAppointment.dto.AppointmentBatchResultDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentRequestDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.CursorPageDTO;
+import com.jugovicm.DoctorAppointment.exception.PreconditionFailedException;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface AppointmentService {
 
@@ -21,6 +27,17 @@ public interface AppointmentService {
      */
     AppointmentResponseDTO createAppointment(@Valid AppointmentRequestDTO appointment, String username);
 
+    /**
+     * Creates many appointments in one transaction.
+     * Invalid items, unknown patients or doctors and double bookings are reported per item
+     * and do not stop the other items from being created.
+     *
+     * @param appointments DTOs containing appointment details.
+     * @param username Username of the doctor creating the appointments.
+     * @return The outcome of every item, in request order.
+     */
+    AppointmentBatchResultDTO createAppointments(List<AppointmentRequestDTO> appointments, String username);
+
     /**
      * Retrieves an appointment by its ID.
      *
@@ -29,6 +46,15 @@ public interface AppointmentService {
      */
     AppointmentResponseDTO getAppointment(UUID appointmentId);
 
+    /**
+     * Returns the strong ETag of an appointment, built from the versions of the appointment,
+     * its patient and its doctors. Cheaper than {@link #getAppointment(UUID)}: no rows are mapped.
+     *
+     * @param appointmentId UUID of the appointment.
+     * @return The ETag value, without quotes.
+     */
+    String getAppointmentETag(UUID appointmentId);
+
     /**
      * Retrieves all appointments.
      *
@@ -44,6 +70,15 @@ public interface AppointmentService {
      */
     List<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId);
 
+    /**
+     * Returns an ETag over everything {@link #getAppointmentsByDoctor(UUID)} would return: the doctor's
+     * change counter, which database triggers bump with every write that changes the list.
+     *
+     * @param doctorId UUID of the doctor.
+     * @return The ETag value, without quotes.
+     */
+    String getAppointmentsByDoctorETag(UUID doctorId);
+
     /**
      * Retrieves all appointments for a given patient.
      *
@@ -52,15 +87,50 @@ public interface AppointmentService {
      */
     List<AppointmentResponseDTO> getAppointmentsByPatient(UUID patientId);
 
+    /**
+     * Retrieves the appointments that start in a time range.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @param status Only appointments with this status, or null for all.
+     * @return The matching appointments in time order.
+     */
+    List<AppointmentResponseDTO> getAppointments(LocalDateTime from, LocalDateTime to, AppointmentStatus status);
+
+    /**
+     * Retrieves the appointments of a doctor that start in a time range.
+     *
+     * @param doctorId UUID of the doctor.
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @param status Only appointments with this status, or null for all.
+     * @return The matching appointments in time order.
+     */
+    List<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, LocalDateTime from, LocalDateTime to, AppointmentStatus status);
+
+    /**
+     * Retrieves the appointments of a patient that start in a time range.
+     *
+     * @param patientId UUID of the patient.
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @param status Only appointments with this status, or null for all.
+     * @return The matching appointments in time order.
+     */
+    List<AppointmentResponseDTO> getAppointmentsByPatient(UUID patientId, LocalDateTime from, LocalDateTime to, AppointmentStatus status);
+
     /**
      * Cancels an appointment.
      *
      * @param appointmentId UUID of the appointment to cancel.
      * @param username Username of the doctor requesting the cancellation.
-     * @return The updated appointment as a DTO.
+     * @param ifMatch Value of the If-Match header, or null to skip the check.
+     * @param returnBody Whether to load the cancelled appointment for the response.
+     * @return The updated appointment as a DTO, or null if {@code returnBody} is false.
      * @throws AccessDeniedException If the user is not authorized to cancel the appointment.
+     * @throws PreconditionFailedException If the appointment no longer matches {@code ifMatch}.
      */
-    AppointmentResponseDTO cancelAppointment(UUID appointmentId, String username) throws AccessDeniedException;
+    AppointmentResponseDTO cancelAppointment(UUID appointmentId, String username, String ifMatch, boolean returnBody) throws AccessDeniedException;
 
     /**
      * Deletes an appointment.
@@ -77,10 +147,12 @@ public interface AppointmentService {
      * @param appointmentId UUID of the appointment to update.
      * @param dto DTO containing appointment details.
      * @param username Username of the doctor requesting the update.
+     * @param ifMatch Value of the If-Match header, or null to skip the check.
      * @return The updated appointment as a DTO.
      * @throws AccessDeniedException If the user is not authorized to update the appointment.
+     * @throws PreconditionFailedException If the appointment no longer matches {@code ifMatch}.
      */
-    AppointmentResponseDTO updateAppointment(UUID appointmentId, AppointmentRequestDTO dto, String username) throws AccessDeniedException;
+    AppointmentResponseDTO updateAppointment(UUID appointmentId, AppointmentRequestDTO dto, String username, String ifMatch) throws AccessDeniedException;
 
     /**
      * Retrieves a paginated list of all appointments.
@@ -98,4 +170,33 @@ public interface AppointmentService {
      * @return A paginated page of appointments for the specified doctor.
      */
     Page<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, Pageable pageable);
+
+    /**
+     * Retrieves one keyset page of all appointments, ordered by appointment time and ID.
+     * Unlike offset pagination, every page costs the same and no count query is run.
+     *
+     * @param after Cursor returned with the previous page, or null for the first page.
+     * @param size Maximum number of appointments on the page.
+     * @return The page of appointments together with the cursor of the next page.
+     */
+    CursorPageDTO<AppointmentResponseDTO> getAllAppointments(String after, int size);
+
+    /**
+     * Retrieves one keyset page of appointments for a specific doctor.
+     *
+     * @param doctorId UUID of the doctor.
+     * @param after Cursor returned with the previous page, or null for the first page.
+     * @param size Maximum number of appointments on the page.
+     * @return The page of appointments together with the cursor of the next page.
+     */
+    CursorPageDTO<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, String after, int size);
+
+    /**
+     * Streams all appointments, ordered by appointment time, to the given consumer.
+     * Appointments are read through a database cursor and detached once consumed,
+     * so heap use does not grow with the number of appointments.
+     *
+     * @param consumer Receives each appointment as a DTO, in order.
+     */
+    void exportAppointments(Consumer<AppointmentResponseDTO> consumer);
 }
@@ -0,0 +1,23 @@
+package com.jugovicm.DoctorAppointment.service;
+
+import com.jugovicm.DoctorAppointment.dto.AvailabilityDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface AvailabilityService {
+
+    /**
+     * Finds the earliest slots in which all given doctors are free.
+     * Slots lie on a grid of {@code slotMinutes} starting at the beginning of working hours each day.
+     *
+     * @param doctorIds   Doctors that must all be free.
+     * @param from        Start of the search window (inclusive).
+     * @param to          End of the search window (exclusive).
+     * @param slotMinutes Length of one slot in minutes.
+     * @param limit       Maximum number of slots to return.
+     * @return The free slots, earliest first.
+     */
+    AvailabilityDTO findFreeSlots(List<UUID> doctorIds, LocalDateTime from, LocalDateTime to, int slotMinutes, int limit);
+}
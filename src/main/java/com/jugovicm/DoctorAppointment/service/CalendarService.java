@@ -0,0 +1,25 @@
+package com.jugovicm.DoctorAppointment.service;
+
+import com.jugovicm.DoctorAppointment.dto.CalendarDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarView;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public interface CalendarService {
+
+    /**
+     * Builds the day or week agenda of each given doctor.
+     * An appointment is shown on every day of the view it overlaps, so one that runs past midnight
+     * appears on both days.
+     *
+     * @param doctorIds Doctors to show, in display order.
+     * @param date      The day to show, or any day of the week to show.
+     * @param view      Day or week.
+     * @param status    Only appointments with this status, or null for all.
+     * @return One agenda per doctor, with every day of the view.
+     */
+    CalendarDTO getCalendar(List<UUID> doctorIds, LocalDate date, CalendarView view, AppointmentStatus status);
+}
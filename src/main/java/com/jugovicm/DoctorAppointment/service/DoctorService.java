@@ -1,6 +1,7 @@
 package com.jugovicm.DoctorAppointment.service;
 import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 import java.util.UUID;
@@ -37,10 +38,26 @@ public interface DoctorService {
      */
     void deleteDoctor(UUID id);
 
+    /**
+     * Deletes every doctor who is not on any appointment, except those created within {@code inactive.min-age}
+     * (default 30 days), which may simply not have booked yet.
+     *
+     * @return The number of deleted doctors.
+     */
+    int deleteInactiveDoctors();
+
     @Transactional
     DoctorDTO updateDoctor(UUID id, DoctorDTO doctorDTO);
 
-    List<DoctorDTO> searchDoctors(String query);
+    /**
+     * Searches doctors by name or username, tolerating typos and diacritics.
+     * Results are ordered by relevance, best match first.
+     *
+     * @param query The search term.
+     * @param pageable Page number and size of the result (sorting is by relevance).
+     * @return One page of matching doctors as DTOs.
+     */
+    List<DoctorDTO> searchDoctors(String query, Pageable pageable);
 }
 
 
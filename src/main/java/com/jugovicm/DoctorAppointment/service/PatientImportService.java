@@ -0,0 +1,26 @@
+package com.jugovicm.DoctorAppointment.service;
+
+import com.jugovicm.DoctorAppointment.dto.PatientImportResultDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface PatientImportService {
+
+    enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * Imports patients from a stream, validating every row with the {@code PatientDTO} rules.
+     * Valid rows are written in chunks, each chunk in its own transaction; chunks written before
+     * a database error stay imported.
+     *
+     * @param input The uploaded file. CSV needs a header row naming the columns
+     *              {@code firstName,lastName,middleName,dateOfBirth}; NDJSON has one patient object per line.
+     * @param format Format of the input.
+     * @return Counts of imported and rejected rows, with the reasons for the first rejected rows.
+     */
+    PatientImportResultDTO importPatients(InputStream input, Format format) throws IOException;
+}
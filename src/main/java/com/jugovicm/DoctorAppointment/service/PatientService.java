@@ -39,9 +39,19 @@ public interface PatientService {
      */
     void deletePatient(UUID id);
 
+    /**
+     * Deletes every patient without appointments, except those created within {@code inactive.min-age}
+     * (default 30 days), which may simply not have booked yet.
+     *
+     * @return The number of deleted patients.
+     */
+    int deleteInactivePatients();
+
     /**
      * Searches for patients by first name, last name, or middle name.
      * The search is case-insensitive and supports partial matches.
+     * It is answered from the in-memory name index (best matches first, at most 50),
+     * and from the database only while the index is still being built.
      *
      * @param searchTerm The term used for searching patients.
      * @return A list of matching patients as DTOs.
@@ -0,0 +1,39 @@
+package com.jugovicm.DoctorAppointment.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last appointment returned in a keyset page.
+ * Encoded as an opaque URL-safe token so clients do not depend on its format.
+ */
+record AppointmentCursor(LocalDateTime appointmentTime, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    String encode() {
+        String raw = appointmentTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The decoded cursor, or {@code null} when no token was given (first page).
+     */
+    static AppointmentCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new AppointmentCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.jugovicm.DoctorAppointment.service.impl;
+
+import com.jugovicm.DoctorAppointment.outbox.AppointmentEvent;
+import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
+import com.jugovicm.DoctorAppointment.service.AppointmentFeedService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory fan-out of committed appointment changes to Server-Sent Events subscribers, per doctor.
+ * The changes of all instances arrive through {@link com.jugovicm.DoctorAppointment.outbox.OutboxNotificationListener}.
+ *
+ * <p>Every change gets an increasing event ID and stays in a replay buffer of the last
+ * {@code feed.replay-size} changes, so a client reconnecting with {@code Last-Event-ID} receives what
+ * it missed. When the buffer no longer reaches back that far, the client gets a {@code RESET} event
+ * and should reload the doctor's appointments. Event IDs belong to this instance: an ID this instance
+ * did not send, e.g. after the load balancer moved the client, gets a reset too.</p>
+ *
+ * <p>Writers never wait for subscribers. Publishing only adds to each subscriber's queue of
+ * {@code feed.subscriber-buffer} events, and separate threads write the queues to the connections.
+ * A subscriber whose queue is full is disconnected; it reconnects and catches up from the replay buffer.</p>
+ */
+@Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
+public class AppointmentFeedServiceImpl implements AppointmentFeedService, DisposableBean {
+
+    private static final String RESET_EVENT = "RESET";
+
+    private final DoctorRepository doctorRepository;
+    private final int replaySize;
+    private final int subscriberBuffer;
+    private final Duration timeout;
+    // Virtual threads: a slow client blocks only its own sender, however many streams are open
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("appointment-feed-", 1).factory());
+
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Guards the event IDs, the replay buffer and subscribing, so a subscriber sees every event exactly once
+    private final Object lock = new Object();
+    // Starts at the startup time in microseconds: IDs keep increasing across restarts, and a client
+    // resuming from an earlier run gets a reset instead of silently missing the changes in between
+    private long nextId = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    private final Deque<FeedEvent> replay = new ArrayDeque<>();
+
+    private record FeedEvent(long id, AppointmentEvent event) {
+    }
+
+    @Autowired
+    public AppointmentFeedServiceImpl(DoctorRepository doctorRepository,
+                                      @Value("${feed.replay-size:1000}") int replaySize,
+                                      @Value("${feed.subscriber-buffer:256}") int subscriberBuffer,
+                                      @Value("${feed.timeout:30m}") Duration timeout) {
+        this.doctorRepository = doctorRepository;
+        this.replaySize = replaySize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public SseEmitter subscribe(UUID doctorId, String lastEventId) {
+        Long resumeAfter = parseEventId(lastEventId);
+        // findById goes through the second-level cache
+        if (doctorRepository.findById(doctorId).isEmpty()) {
+            throw new EntityNotFoundException("Doctor with ID " + doctorId + " not found");
+        }
+
+        Subscriber subscriber = new Subscriber(doctorId, new SseEmitter(timeout.toMillis()));
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        synchronized (lock) {
+            if (resumeAfter != null) {
+                replayAfter(subscriber, resumeAfter);
+            }
+            subscribers.computeIfAbsent(doctorId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        return subscriber.emitter;
+    }
+
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Last-Event-ID must be an event ID sent by this stream.");
+        }
+    }
+
+    /**
+     * Queues the buffered changes of the subscriber's doctor after the given ID, or a reset if some
+     * of them are no longer buffered or they would not fit into the subscriber's queue.
+     */
+    private void replayAfter(Subscriber subscriber, long lastEventId) {
+        long oldest = replay.isEmpty() ? nextId : replay.peekFirst().id();
+        // An ID ahead of this stream was sent by another instance, which started later
+        boolean known = lastEventId + 1 >= oldest && lastEventId < nextId;
+        List<FeedEvent> missed = new ArrayList<>();
+        if (known) {
+            for (FeedEvent event : replay) {
+                if (event.id() > lastEventId && concerns(event.event(), subscriber.doctorId)) {
+                    missed.add(event);
+                }
+            }
+        }
+        if (!known || missed.size() > subscriberBuffer) {
+            subscriber.offer(resetEvent());
+            return;
+        }
+        missed.forEach(event -> subscriber.offer(toSse(event)));
+    }
+
+    @Override
+    public void publish(List<AppointmentEvent> events) {
+        synchronized (lock) {
+            for (AppointmentEvent event : events) {
+                FeedEvent feedEvent = new FeedEvent(nextId++, event);
+                replay.addLast(feedEvent);
+                if (replay.size() > replaySize) {
+                    replay.removeFirst();
+                }
+                if (event.doctorIds() == null) {
+                    continue;
+                }
+                for (UUID doctorId : event.doctorIds()) {
+                    for (Subscriber subscriber : subscribers.getOrDefault(doctorId, Set.of())) {
+                        subscriber.offer(toSse(feedEvent));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (lock) {
+            // Clients resuming from before the reset get a reset as well
+            replay.clear();
+            for (Set<Subscriber> doctorSubscribers : subscribers.values()) {
+                for (Subscriber subscriber : doctorSubscribers) {
+                    subscriber.offer(resetEvent());
+                }
+            }
+        }
+    }
+
+    private SseEmitter.SseEventBuilder resetEvent() {
+        return SseEmitter.event().id(Long.toString(nextId - 1)).name(RESET_EVENT).data("");
+    }
+
+    private static boolean concerns(AppointmentEvent event, UUID doctorId) {
+        return event.doctorIds() != null && event.doctorIds().contains(doctorId);
+    }
+
+    private static SseEmitter.SseEventBuilder toSse(FeedEvent event) {
+        return SseEmitter.event()
+                .id(Long.toString(event.id()))
+                .name(event.event().type().name())
+                .data(event.event(), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Comment lines keep idle connections open through proxies and reveal clients that went away.
+     */
+    @Scheduled(fixedRateString = "${feed.heartbeat-interval:15s}")
+    public void heartbeat() {
+        for (Set<Subscriber> doctorSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : doctorSubscribers) {
+                subscriber.offerIfIdle(SseEmitter.event().comment("keep-alive"));
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.doctorId, (id, doctorSubscribers) -> {
+            doctorSubscribers.remove(subscriber);
+            return doctorSubscribers.isEmpty() ? null : doctorSubscribers;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.values().forEach(doctorSubscribers -> doctorSubscribers.forEach(Subscriber::close));
+        senders.shutdownNow();
+    }
+
+    /**
+     * One open stream. Events are written by at most one sender thread at a time, in queue order;
+     * SseEmitter methods block while a write is in progress, so only that thread calls them.
+     */
+    private final class Subscriber {
+
+        private final UUID doctorId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(subscriberBuffer);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(UUID doctorId, SseEmitter emitter) {
+            this.doctorId = doctorId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!queue.offer(event)) {
+                closed = true; // Too slow: dropped, it resumes from the replay buffer when it reconnects
+            }
+            send();
+        }
+
+        void offerIfIdle(SseEmitter.SseEventBuilder event) {
+            if (queue.isEmpty()) {
+                offer(event);
+            }
+        }
+
+        void close() {
+            closed = true;
+            send();
+        }
+
+        private void send() {
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client is gone or the stream timed out
+                closed = true;
+            }
+            if (closed) {
+                unsubscribe(this);
+                queue.clear();
+                try {
+                    emitter.complete();
+                } catch (IllegalStateException e) {
+                    // Already ended by the container
+                }
+                return; // Stays marked as sending, so nothing is sent after the end
+            }
+            sending.set(false);
+            if (!queue.isEmpty() || closed) {
+                send();
+            }
+        }
+    }
+}
@@ -1,128 +1,552 @@
 package com.jugovicm.DoctorAppointment.service.impl;
 
+import com.jugovicm.DoctorAppointment.archive.PartitionWindow;
+import com.jugovicm.DoctorAppointment.dto.AppointmentBatchItemDTO;
+import com.jugovicm.DoctorAppointment.dto.AppointmentBatchResultDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentRequestDTO;
 import com.jugovicm.DoctorAppointment.dto.AppointmentResponseDTO;
+import com.jugovicm.DoctorAppointment.dto.AppointmentRow;
+import com.jugovicm.DoctorAppointment.dto.AppointmentVersionRow;
+import com.jugovicm.DoctorAppointment.dto.CursorPageDTO;
+import com.jugovicm.DoctorAppointment.dto.DoctorBookingRow;
 import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
 import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.exception.PreconditionFailedException;
 import com.jugovicm.DoctorAppointment.model.Appointment;
 import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
 import com.jugovicm.DoctorAppointment.model.Doctor;
 import com.jugovicm.DoctorAppointment.model.Patient;
+import com.jugovicm.DoctorAppointment.outbox.AppointmentEvent;
+import com.jugovicm.DoctorAppointment.outbox.AppointmentEventType;
+import com.jugovicm.DoctorAppointment.outbox.AppointmentOutbox;
 import com.jugovicm.DoctorAppointment.repository.AppointmentRepository;
+import com.jugovicm.DoctorAppointment.repository.ArchivedAppointmentRepository;
 import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
 import com.jugovicm.DoctorAppointment.repository.PatientRepository;
+import com.jugovicm.DoctorAppointment.schedule.DoctorScheduleIndex;
 import com.jugovicm.DoctorAppointment.service.AppointmentService;
+import com.jugovicm.DoctorAppointment.util.TransactionHooks;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.file.AccessDeniedException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
 public class AppointmentServiceImpl implements AppointmentService {
 
     private static final Logger log = LoggerFactory.getLogger(AppointmentServiceImpl.class);
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final AppointmentRepository appointmentRepository;
+    private final ArchivedAppointmentRepository archivedAppointmentRepository;
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final PartitionWindow partitionWindow;
+    private final AppointmentOutbox appointmentOutbox;
+    private final Validator validator;
 
     @Autowired
-    public AppointmentServiceImpl(AppointmentRepository appointmentRepository, DoctorRepository doctorRepository, PatientRepository patientRepository) {
+    public AppointmentServiceImpl(AppointmentRepository appointmentRepository, ArchivedAppointmentRepository archivedAppointmentRepository,
+                                  DoctorRepository doctorRepository, PatientRepository patientRepository,
+                                  DoctorScheduleIndex doctorScheduleIndex, PartitionWindow partitionWindow,
+                                  AppointmentOutbox appointmentOutbox, Validator validator) {
         this.appointmentRepository = appointmentRepository;
+        this.archivedAppointmentRepository = archivedAppointmentRepository;
         this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
+        this.doctorScheduleIndex = doctorScheduleIndex;
+        this.partitionWindow = partitionWindow;
+        this.appointmentOutbox = appointmentOutbox;
+        this.validator = validator;
     }
 
     @Transactional
     @Override
     public AppointmentResponseDTO createAppointment(@Valid AppointmentRequestDTO dto, String username) {
         log.info("Creating appointment for patient ID: {}", dto.getPatientId());
+        partitionWindow.check(dto.getAppointmentTime());
 
         Patient patient = patientRepository.findById(dto.getPatientId())
                 .orElseThrow(() -> new EntityNotFoundException("Patient not found"));
 
-        List<Doctor> doctors = doctorRepository.findAllById(dto.getDoctorIds());
+        // findById goes through the second-level cache, findAllById would always query the database
+        List<Doctor> doctors = dto.getDoctorIds().stream()
+                .distinct()
+                .map(doctorRepository::findById)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
         if (doctors.isEmpty() || doctors.size() != dto.getDoctorIds().size()) {
             throw new EntityNotFoundException("One or more doctors not found.");
         }
 
         Appointment appointment = new Appointment();
         appointment.setAppointmentTime(dto.getAppointmentTime());
+        appointment.setDurationMinutes(dto.getDurationMinutes() != null ? dto.getDurationMinutes() : Appointment.DEFAULT_DURATION_MINUTES);
         appointment.setStatus(dto.getStatus());
         appointment.setPatient(patient);
         appointment.setDoctors(doctors);
         appointment.setCreatedBy(username);
 
+        // The ID is assigned on save, so the slot is held under a placeholder until then
+        UUID placeholder = null;
+        if (appointment.getStatus() == AppointmentStatus.SCHEDULED) {
+            placeholder = UUID.randomUUID();
+            reserveSlot(placeholder, appointment);
+            lockAndCheckSlot(null, doctorIdsOf(appointment), appointment.getAppointmentTime(), appointment.getDurationMinutes());
+        }
+
         appointment = appointmentRepository.save(appointment);
+        if (placeholder != null) {
+            rekeySlot(placeholder, appointment.getId());
+        }
         log.info("Successfully created appointment with ID: {}", appointment.getId());
 
-        return mapToResponseDTO(appointment);
+        AppointmentResponseDTO created = mapToResponseDTO(appointment);
+        recordChanges(List.of(AppointmentEvent.of(AppointmentEventType.CREATED, created, username)));
+        return created;
     }
 
 
+    @Transactional
+    @Override
+    public AppointmentBatchResultDTO createAppointments(List<AppointmentRequestDTO> dtos, String username) {
+        if (dtos == null || dtos.isEmpty() || dtos.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " appointments.");
+        }
+        long started = System.nanoTime();
+
+        // One IN query each for all patients and doctors referenced by the batch
+        Map<UUID, Patient> patients = findAllById(dtos.stream().map(AppointmentRequestDTO::getPatientId),
+                patientRepository::findAllById, Patient::getId);
+        Map<UUID, Doctor> doctors = findAllById(dtos.stream()
+                        .map(AppointmentRequestDTO::getDoctorIds).filter(Objects::nonNull).flatMap(List::stream),
+                doctorRepository::findAllById, Doctor::getId);
+
+        List<AppointmentBatchItemDTO> items = new ArrayList<>(dtos.size());
+        List<Appointment> appointments = new ArrayList<>();
+        List<AppointmentBatchItemDTO> createdItems = new ArrayList<>();
+        List<UUID> placeholders = new ArrayList<>(); // Parallel to appointments, null when no slot is held
+        for (int i = 0; i < dtos.size(); i++) {
+            AppointmentBatchItemDTO item = new AppointmentBatchItemDTO();
+            item.setIndex(i);
+            items.add(item);
+            try {
+                Appointment appointment = buildBatchAppointment(dtos.get(i), patients, doctors, username);
+                UUID placeholder = null;
+                if (appointment.getStatus() == AppointmentStatus.SCHEDULED) {
+                    // IDs are assigned on save, so the slot is held under a placeholder until then;
+                    // this also catches double bookings between items of the same batch
+                    placeholder = UUID.randomUUID();
+                    reserveSlot(placeholder, appointment);
+                }
+                appointments.add(appointment);
+                placeholders.add(placeholder);
+                createdItems.add(item);
+            } catch (IllegalArgumentException | EntityNotFoundException e) {
+                item.setError(e.getMessage());
+            }
+        }
+        checkBatchSlots(appointments, placeholders, createdItems);
+
+        // Inserts are sent in JDBC batches (hibernate.jdbc.batch_size) when the transaction flushes
+        List<Appointment> saved = appointmentRepository.saveAll(appointments);
+        List<AppointmentEvent> events = new ArrayList<>(saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            Appointment appointment = saved.get(i);
+            UUID placeholder = placeholders.get(i);
+            if (placeholder != null) {
+                rekeySlot(placeholder, appointment.getId());
+            }
+            AppointmentBatchItemDTO item = createdItems.get(i);
+            item.setCreated(true);
+            item.setAppointment(mapToResponseDTO(appointment));
+            events.add(AppointmentEvent.of(AppointmentEventType.CREATED, item.getAppointment(), username));
+        }
+        recordChanges(events);
+
+        AppointmentBatchResultDTO result = new AppointmentBatchResultDTO();
+        result.setTotal(dtos.size());
+        result.setCreated((int) items.stream().filter(AppointmentBatchItemDTO::isCreated).count());
+        result.setRejected(result.getTotal() - result.getCreated());
+        result.setItems(items);
+        log.info("Batch created {} of {} appointments in {} ms.",
+                result.getCreated(), result.getTotal(), (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    private Appointment buildBatchAppointment(AppointmentRequestDTO dto, Map<UUID, Patient> patients,
+                                              Map<UUID, Doctor> doctors, String username) {
+        Set<ConstraintViolation<AppointmentRequestDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+
+        partitionWindow.check(dto.getAppointmentTime());
+
+        Patient patient = patients.get(dto.getPatientId());
+        if (patient == null) {
+            throw new EntityNotFoundException("Patient not found");
+        }
+        List<Doctor> appointmentDoctors = dto.getDoctorIds().stream().distinct().map(doctors::get).toList();
+        if (appointmentDoctors.isEmpty() || appointmentDoctors.contains(null)) {
+            throw new EntityNotFoundException("One or more doctors not found.");
+        }
+
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentTime(dto.getAppointmentTime());
+        appointment.setDurationMinutes(dto.getDurationMinutes() != null ? dto.getDurationMinutes() : Appointment.DEFAULT_DURATION_MINUTES);
+        appointment.setStatus(dto.getStatus());
+        appointment.setPatient(patient);
+        appointment.setDoctors(new ArrayList<>(appointmentDoctors));
+        appointment.setCreatedBy(username);
+        return appointment;
+    }
+
+    private static <T> Map<UUID, T> findAllById(Stream<UUID> ids, Function<Collection<UUID>, List<T>> finder,
+                                                Function<T, UUID> idOf) {
+        Set<UUID> distinct = ids.filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinct.isEmpty()) {
+            return Map.of();
+        }
+        return finder.apply(distinct).stream().collect(Collectors.toMap(idOf, Function.identity()));
+    }
+
+    /**
+     * The database check of {@link #lockAndCheckSlot} for all slots of a batch, with one lock call and one query.
+     * Items that overlap a stored appointment are rejected and dropped from the lists.
+     */
+    private void checkBatchSlots(List<Appointment> appointments, List<UUID> placeholders, List<AppointmentBatchItemDTO> createdItems) {
+        Set<UUID> doctorIds = new HashSet<>();
+        LocalDateTime from = LocalDateTime.MAX;
+        LocalDateTime to = LocalDateTime.MIN;
+        for (int i = 0; i < appointments.size(); i++) {
+            if (placeholders.get(i) != null) {
+                Appointment appointment = appointments.get(i);
+                doctorIds.addAll(doctorIdsOf(appointment));
+                from = min(from, appointment.getAppointmentTime());
+                to = max(to, appointment.getAppointmentTime().plusMinutes(appointment.getDurationMinutes()));
+            }
+        }
+        if (doctorIds.isEmpty()) {
+            return;
+        }
+        appointmentRepository.lockDoctorSchedules(doctorIds.toArray(UUID[]::new));
+        List<DoctorBookingRow> booked = findScheduledBookings(doctorIds, from, to);
+        for (int i = appointments.size() - 1; i >= 0; i--) {
+            UUID placeholder = placeholders.get(i);
+            if (placeholder == null) {
+                continue;
+            }
+            Appointment appointment = appointments.get(i);
+            try {
+                checkSlotFree(null, doctorIdsOf(appointment), appointment.getAppointmentTime(),
+                        appointment.getDurationMinutes(), booked);
+            } catch (IllegalArgumentException e) {
+                createdItems.get(i).setError(e.getMessage());
+                doctorScheduleIndex.release(placeholder);
+                appointments.remove(i);
+                placeholders.remove(i);
+                createdItems.remove(i);
+            }
+        }
+    }
+
+    private static LocalDateTime min(LocalDateTime first, LocalDateTime second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static LocalDateTime max(LocalDateTime first, LocalDateTime second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static List<UUID> doctorIdsOf(Appointment appointment) {
+        return appointment.getDoctors().stream().map(Doctor::getId).toList();
+    }
+
+    /**
+     * Takes the appointment's slot in the schedule index right away, so concurrent bookings on this
+     * instance see it, and gives it back if the transaction rolls back. This is only the fast path,
+     * see {@link #lockAndCheckSlot}.
+     */
+    private void reserveSlot(UUID bookingId, Appointment appointment) {
+        doctorScheduleIndex.reserve(bookingId, doctorIdsOf(appointment),
+                appointment.getAppointmentTime(), appointment.getDurationMinutes());
+        TransactionHooks.afterRollback(() -> doctorScheduleIndex.release(bookingId));
+    }
+
+    private void rekeySlot(UUID placeholder, UUID appointmentId) {
+        doctorScheduleIndex.rekey(placeholder, appointmentId);
+        TransactionHooks.afterRollback(() -> doctorScheduleIndex.release(appointmentId));
+    }
+
+    /**
+     * The guard against double bookings across instances: locks the doctors' schedules in the database
+     * until the transaction ends (V11), so bookings of the same doctors queue here, then checks the interval
+     * against their scheduled appointments. Runs before the transaction writes anything; taking the lock
+     * after a write could deadlock with a booking that holds it.
+     *
+     * @param appointmentId The appointment being moved, which does not overlap itself, or null for a new one.
+     */
+    private void lockAndCheckSlot(UUID appointmentId, List<UUID> doctorIds, LocalDateTime start, int durationMinutes) {
+        appointmentRepository.lockDoctorSchedules(doctorIds.toArray(UUID[]::new));
+        checkSlotFree(appointmentId, doctorIds, start, durationMinutes,
+                findScheduledBookings(doctorIds, start, start.plusMinutes(durationMinutes)));
+    }
+
+    /**
+     * Scheduled bookings of the doctors that may overlap [from, to).
+     */
+    private List<DoctorBookingRow> findScheduledBookings(Collection<UUID> doctorIds, LocalDateTime from, LocalDateTime to) {
+        return appointmentRepository.findScheduledBookings(doctorIds, from.minusMinutes(Appointment.MAX_DURATION_MINUTES), from, to);
+    }
+
+    /**
+     * @throws IllegalArgumentException if one of the doctors is booked in the interval by another appointment.
+     */
+    private static void checkSlotFree(UUID appointmentId, Collection<UUID> doctorIds, LocalDateTime start,
+                                      int durationMinutes, List<DoctorBookingRow> booked) {
+        LocalDateTime end = start.plusMinutes(durationMinutes);
+        for (DoctorBookingRow row : booked) {
+            if (doctorIds.contains(row.doctorId()) && !row.appointmentId().equals(appointmentId)
+                    && row.appointmentTime().isBefore(end)
+                    && row.appointmentTime().plusMinutes(row.durationMinutes()).isAfter(start)) {
+                throw new IllegalArgumentException("Doctor with ID " + row.doctorId() + " is already booked between "
+                        + start + " and " + end + ".");
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
     @Override
     public AppointmentResponseDTO getAppointment(UUID appointmentId) {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
-                .orElseThrow(() -> new EntityNotFoundException("Appointment with ID " + appointmentId + " not found"));
+        List<AppointmentResponseDTO> appointments = groupRows(appointmentRepository.findRowsById(appointmentId));
+        if (appointments.isEmpty()) {
+            // Old appointments are moved to the archive; only a miss in the live table looks there
+            appointments = groupRows(archivedAppointmentRepository.findRowsById(appointmentId));
+        }
+        if (appointments.isEmpty()) {
+            throw new EntityNotFoundException("Appointment with ID " + appointmentId + " not found");
+        }
+
+        return appointments.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public String getAppointmentETag(UUID appointmentId) {
+        List<AppointmentVersionRow> rows = appointmentRepository.findVersionsById(appointmentId);
+        if (rows.isEmpty()) {
+            rows = archivedAppointmentRepository.findVersionsById(appointmentId);
+        }
+        if (rows.isEmpty()) {
+            throw new EntityNotFoundException("Appointment with ID " + appointmentId + " not found");
+        }
+
+        SortedMap<UUID, Long> doctorVersions = new TreeMap<>();
+        for (AppointmentVersionRow row : rows) {
+            if (row.doctorId() != null) {
+                doctorVersions.put(row.doctorId(), row.doctorVersion());
+            }
+        }
+        return eTag(rows.get(0).version(), rows.get(0).patientVersion(), doctorVersions);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public String getAppointmentsByDoctorETag(UUID doctorId) {
+        return Long.toString(appointmentRepository.findScheduleVersionByDoctorId(doctorId));
+    }
 
-        return mapToResponseDTO(appointment);
+    /**
+     * Strong ETag of one appointment: its version, its patient's version and its doctors' versions
+     * in doctor ID order. Every field of the response comes from one of these rows, and changing
+     * the doctors of an appointment bumps the appointment's version.
+     */
+    private static String eTag(long version, long patientVersion, SortedMap<UUID, Long> doctorVersions) {
+        StringBuilder eTag = new StringBuilder().append(version).append('-').append(patientVersion);
+        doctorVersions.values().forEach(doctorVersion -> eTag.append('-').append(doctorVersion));
+        return eTag.toString();
+    }
+
+    private static String eTag(Appointment appointment) {
+        SortedMap<UUID, Long> doctorVersions = new TreeMap<>();
+        appointment.getDoctors().forEach(doctor -> doctorVersions.put(doctor.getId(), doctor.getVersion()));
+        return eTag(appointment.getVersion(), appointment.getPatient().getVersion(), doctorVersions);
+    }
+
+    /**
+     * Compares an If-Match header (one or more ETags, or *) with the appointment as loaded.
+     * Weak ETags never match, as If-Match requires strong comparison.
+     */
+    private static void checkIfMatch(String ifMatch, Appointment appointment) {
+        if (ifMatch == null) {
+            return;
+        }
+        String current = "\"" + eTag(appointment) + "\"";
+        for (String eTag : ifMatch.split(",")) {
+            if (eTag.trim().equals("*") || eTag.trim().equals(current)) {
+                return;
+            }
+        }
+        throw new PreconditionFailedException("The appointment has been modified. Its current ETag is " + current + ".");
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<AppointmentResponseDTO> getAllAppointments() {
-        return appointmentRepository.findAll().stream()
-                .map(this::mapToResponseDTO)
-                .collect(Collectors.toList());
+        return groupRows(appointmentRepository.findAllRows());
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId) {
-        return appointmentRepository.findByDoctors_Id(doctorId).stream()
-                .map(this::mapToResponseDTO)
-                .collect(Collectors.toList());
+        return groupRows(appointmentRepository.findRowsByDoctorId(doctorId));
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<AppointmentResponseDTO> getAppointmentsByPatient(UUID patientId) {
-        return appointmentRepository.findByPatient_Id(patientId).stream()
-                .map(this::mapToResponseDTO)
-                .collect(Collectors.toList());
+        return groupRows(appointmentRepository.findRowsByPatientId(patientId));
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     @Override
-    public AppointmentResponseDTO cancelAppointment(UUID appointmentId, String username) throws AccessDeniedException {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
-                .orElseThrow(() -> new EntityNotFoundException("Appointment not found"));
+    public List<AppointmentResponseDTO> getAppointments(LocalDateTime from, LocalDateTime to, AppointmentStatus status) {
+        validateRange(from, to);
+        return groupRows(appointmentRepository.findRowsInRange(from, to, statuses(status)));
+    }
 
-        // Provera autorizacije
-        if (!appointment.getCreatedBy().equals(username)) {
-            throw new AccessDeniedException("You are not authorized to cancel this appointment.");
+    @Transactional(readOnly = true)
+    @Override
+    public List<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, LocalDateTime from, LocalDateTime to, AppointmentStatus status) {
+        validateRange(from, to);
+        return groupRows(appointmentRepository.findRowsByDoctorIdInRange(doctorId, from, to, statuses(status)));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<AppointmentResponseDTO> getAppointmentsByPatient(UUID patientId, LocalDateTime from, LocalDateTime to, AppointmentStatus status) {
+        validateRange(from, to);
+        return groupRows(appointmentRepository.findRowsByPatientIdInRange(patientId, from, to, statuses(status)));
+    }
+
+    private static void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both 'from' and 'to' are required to filter appointments.");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'.");
         }
+    }
 
-        appointment.setStatus(AppointmentStatus.valueOf("CANCELLED"));
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
+    /**
+     * A status filter as an IN list, so one query (and one index) serves both the filtered and the unfiltered case.
+     */
+    static Set<AppointmentStatus> statuses(AppointmentStatus status) {
+        return status == null ? EnumSet.allOf(AppointmentStatus.class) : EnumSet.of(status);
+    }
+
+    @Transactional
+    @Override
+    public AppointmentResponseDTO cancelAppointment(UUID appointmentId, String username, String ifMatch, boolean returnBody) throws AccessDeniedException {
+        List<UUID> doctorIds = null;
+        if (ifMatch == null) {
+            // Ownership check and status change in one UPDATE, without loading patient and doctors
+            requireWritten(appointmentRepository.cancelIfOwner(appointmentId, username), appointmentId,
+                    "You are not authorized to cancel this appointment.");
+        } else {
+            Appointment appointment = appointmentRepository.findById(appointmentId)
+                    .orElseThrow(() -> new EntityNotFoundException("Appointment not found"));
+
+            // Provera autorizacije
+            if (!appointment.getCreatedBy().equals(username)) {
+                throw new AccessDeniedException("You are not authorized to cancel this appointment.");
+            }
+            checkIfMatch(ifMatch, appointment);
+
+            appointment.setStatus(AppointmentStatus.CANCELLED);
+            appointmentRepository.save(appointment);
+            doctorIds = appointment.getDoctors().stream().map(Doctor::getId).toList();
+        }
+        TransactionHooks.afterCommit(() -> doctorScheduleIndex.release(appointmentId));
         log.info("Appointment with ID {} has been cancelled.", appointmentId);
 
-        return mapToResponseDTO(updatedAppointment);
+        AppointmentResponseDTO cancelled = returnBody ? getAppointment(appointmentId) : null;
+        if (doctorIds == null) {
+            doctorIds = cancelled != null ? cancelled.getDoctors().stream().map(DoctorDTO::getId).toList()
+                    : appointmentRepository.findDoctorIdsById(appointmentId);
+        }
+        recordChanges(List.of(AppointmentEvent.of(AppointmentEventType.CANCELLED, appointmentId, doctorIds, username)));
+        return cancelled;
     }
 
+    /**
+     * Writes the change events to the outbox in this transaction; the outbox also announces them to the
+     * live feed of every instance once it commits.
+     */
+    private void recordChanges(List<AppointmentEvent> events) {
+        appointmentOutbox.append(events);
+    }
 
+    /**
+     * Turns the row count of a conditional write on {@code id AND created_by} into 404 or 403.
+     * The existence check only runs when no row matched.
+     */
+    private void requireWritten(int rows, UUID appointmentId, String accessDeniedMessage) throws AccessDeniedException {
+        if (rows > 0) {
+            return;
+        }
+        if (!appointmentRepository.existsById(appointmentId)) {
+            throw new EntityNotFoundException("Appointment not found");
+        }
+        throw new AccessDeniedException(accessDeniedMessage);
+    }
 
     private AppointmentResponseDTO mapToResponseDTO(Appointment appointment) {
         AppointmentResponseDTO dto = new AppointmentResponseDTO();
         dto.setId(appointment.getId());
         dto.setAppointmentTime(appointment.getAppointmentTime());
+        dto.setDurationMinutes(appointment.getDurationMinutes());
         dto.setStatus(appointment.getStatus());
         dto.setCreatedBy(appointment.getCreatedBy());
 
@@ -158,25 +582,99 @@ public class AppointmentServiceImpl implements AppointmentService {
         return dto;
     }
 
-    @Transactional
-    @Override
-    public void deleteAppointment(UUID appointmentId, String username) throws AccessDeniedException {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
-                .orElseThrow(() -> new EntityNotFoundException("Appointment not found"));
+    /**
+     * Groups flat appointment rows into DTOs in one pass, collecting the doctors of each appointment.
+     * Keeps the order in which appointments first appear in the rows.
+     */
+    private List<AppointmentResponseDTO> groupRows(List<AppointmentRow> rows) {
+        Map<UUID, AppointmentResponseDTO> appointments = new LinkedHashMap<>();
+        for (AppointmentRow row : rows) {
+            AppointmentResponseDTO dto = appointments.computeIfAbsent(row.id(), id -> mapRowToResponseDTO(row));
+            addDoctor(dto, row);
+        }
+        return new ArrayList<>(appointments.values());
+    }
 
-        // Provera autorizacije
-        if (!appointment.getCreatedBy().equals(username)) {
-            throw new AccessDeniedException("You are not authorized to delete this appointment.");
+    private AppointmentResponseDTO mapRowToResponseDTO(AppointmentRow row) {
+        AppointmentResponseDTO dto = new AppointmentResponseDTO();
+        dto.setId(row.id());
+        dto.setAppointmentTime(row.appointmentTime());
+        dto.setDurationMinutes(row.durationMinutes());
+        dto.setStatus(row.status());
+        dto.setCreatedBy(row.createdBy());
+
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(row.patientId());
+        patientDTO.setFirstName(row.patientFirstName());
+        patientDTO.setLastName(row.patientLastName());
+        patientDTO.setMiddleName(row.patientMiddleName());
+        patientDTO.setDateOfBirth(row.patientDateOfBirth());
+        dto.setPatient(patientDTO);
+
+        dto.setDoctors(new ArrayList<>());
+        return dto;
+    }
+
+    private void addDoctor(AppointmentResponseDTO dto, AppointmentRow row) {
+        if (row.doctorId() == null) {
+            return; // Appointment without doctors (LEFT JOIN)
         }
+        DoctorDTO doctorDTO = new DoctorDTO();
+        doctorDTO.setId(row.doctorId());
+        doctorDTO.setUsername(row.doctorUsername());
+        doctorDTO.setFirstName(row.doctorFirstName());
+        doctorDTO.setLastName(row.doctorLastName());
+        dto.getDoctors().add(doctorDTO);
+    }
 
-        appointmentRepository.delete(appointment);
+    @Transactional
+    @Override
+    public void deleteAppointment(UUID appointmentId, String username) throws AccessDeniedException {
+        // Read first: the delete removes the join rows
+        List<UUID> doctorIds = appointmentRepository.findDoctorIdsById(appointmentId);
+        requireWritten(appointmentRepository.deleteIfOwner(appointmentId, username), appointmentId,
+                "You are not authorized to delete this appointment.");
+        TransactionHooks.afterCommit(() -> doctorScheduleIndex.release(appointmentId));
+        recordChanges(List.of(AppointmentEvent.of(AppointmentEventType.DELETED, appointmentId, doctorIds, username)));
         log.info("Appointment with ID {} deleted successfully.", appointmentId);
     }
 
 
     @Transactional
     @Override
-    public AppointmentResponseDTO updateAppointment(UUID appointmentId, AppointmentRequestDTO dto, String username) throws AccessDeniedException {
+    public AppointmentResponseDTO updateAppointment(UUID appointmentId, AppointmentRequestDTO dto, String username, String ifMatch) throws AccessDeniedException {
+        // Ažuriranje samo datuma i vremena
+        if (dto.getAppointmentTime() == null) {
+            throw new IllegalArgumentException("Appointment time must be provided for update.");
+        }
+        partitionWindow.check(dto.getAppointmentTime());
+        if (ifMatch != null) {
+            return updateAppointmentIfMatch(appointmentId, dto, username, ifMatch);
+        }
+
+        // Ownership check and new time in one UPDATE; the flat rows read afterwards give both the
+        // response and the doctors and duration for the overlap checks. The doctors' schedules are locked
+        // before the UPDATE, see lockAndCheckSlot.
+        appointmentRepository.lockDoctorSchedulesById(appointmentId);
+        requireWritten(appointmentRepository.rescheduleIfOwner(appointmentId, username, dto.getAppointmentTime()),
+                appointmentId, "You are not authorized to update this appointment.");
+        AppointmentResponseDTO updated = getAppointment(appointmentId);
+
+        // A busy slot throws and rolls the UPDATE back
+        if (updated.getStatus() == AppointmentStatus.SCHEDULED) {
+            List<UUID> doctorIds = updated.getDoctors().stream().map(DoctorDTO::getId).toList();
+            moveSlot(appointmentId, doctorIds, dto.getAppointmentTime(), updated.getDurationMinutes());
+            checkSlotFree(appointmentId, doctorIds, dto.getAppointmentTime(), updated.getDurationMinutes(),
+                    findScheduledBookings(doctorIds, dto.getAppointmentTime(),
+                            dto.getAppointmentTime().plusMinutes(updated.getDurationMinutes())));
+        }
+        recordChanges(List.of(AppointmentEvent.of(AppointmentEventType.UPDATED, updated, username)));
+        log.info("Appointment with ID {} updated successfully.", appointmentId);
+
+        return updated;
+    }
+
+    private AppointmentResponseDTO updateAppointmentIfMatch(UUID appointmentId, AppointmentRequestDTO dto, String username, String ifMatch) throws AccessDeniedException {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new EntityNotFoundException("Appointment not found"));
 
@@ -184,30 +682,139 @@ public class AppointmentServiceImpl implements AppointmentService {
         if (!appointment.getCreatedBy().equals(username)) {
             throw new AccessDeniedException("You are not authorized to update this appointment.");
         }
+        checkIfMatch(ifMatch, appointment);
 
-        // Ažuriranje samo datuma i vremena
-        if (dto.getAppointmentTime() == null) {
-            throw new IllegalArgumentException("Appointment time must be provided for update.");
+        if (appointment.getStatus() == AppointmentStatus.SCHEDULED) {
+            List<UUID> doctorIds = doctorIdsOf(appointment);
+            moveSlot(appointmentId, doctorIds, dto.getAppointmentTime(), appointment.getDurationMinutes());
+            lockAndCheckSlot(appointmentId, doctorIds, dto.getAppointmentTime(), appointment.getDurationMinutes());
         }
 
         appointment.setAppointmentTime(dto.getAppointmentTime());
 
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        AppointmentResponseDTO updated = mapToResponseDTO(updatedAppointment);
+        recordChanges(List.of(AppointmentEvent.of(AppointmentEventType.UPDATED, updated, username)));
         log.info("Appointment with ID {} updated successfully.", appointmentId);
 
-        return mapToResponseDTO(updatedAppointment);
+        return updated;
+    }
+
+    /**
+     * The old slot stays taken until commit, the new one is given back on rollback.
+     */
+    private void moveSlot(UUID appointmentId, List<UUID> doctorIds, LocalDateTime start, int durationMinutes) {
+        DoctorScheduleIndex.Move move = doctorScheduleIndex.move(appointmentId, doctorIds, start, durationMinutes);
+        TransactionHooks.afterCommit(move::commit);
+        TransactionHooks.afterRollback(move::rollback);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public Page<AppointmentResponseDTO> getAllAppointments(Pageable pageable) {
-        return appointmentRepository.findAll(pageable)
-                .map(this::mapToResponseDTO);
+        // Two phases: page of IDs in the database, then one batched fetch of patient and doctors
+        return toPage(appointmentRepository.findPageIds(pageable));
     }
 
+    @Transactional(readOnly = true)
     @Override
     public Page<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, Pageable pageable) {
-        return appointmentRepository.findByDoctors_Id(doctorId, pageable)
-                .map(this::mapToResponseDTO);
+        return toPage(appointmentRepository.findPageIdsByDoctor(doctorId, pageable));
+    }
+
+    private Page<AppointmentResponseDTO> toPage(Page<UUID> ids) {
+        return new PageImpl<>(findAllInOrder(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    /**
+     * Loads appointments with their patient and doctors in one query, keeping the order of the given IDs.
+     */
+    private List<AppointmentResponseDTO> findAllInOrder(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, Integer> position = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            position.put(ids.get(i), i);
+        }
+        List<AppointmentResponseDTO> appointments = groupRows(appointmentRepository.findRowsByIdIn(ids));
+        appointments.sort(Comparator.comparing(appointment -> position.get(appointment.getId())));
+        return appointments;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageDTO<AppointmentResponseDTO> getAllAppointments(String after, int size) {
+        validateCursorPageSize(size);
+        AppointmentCursor cursor = AppointmentCursor.decode(after);
+
+        // Fetch one extra ID to know whether a next page exists without counting
+        Limit limit = Limit.of(size + 1);
+        List<UUID> ids = cursor == null
+                ? appointmentRepository.findFirstPageIds(limit)
+                : appointmentRepository.findPageIdsAfter(cursor.appointmentTime(), cursor.id(), limit);
+
+        return toCursorPage(ids, size);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CursorPageDTO<AppointmentResponseDTO> getAppointmentsByDoctor(UUID doctorId, String after, int size) {
+        validateCursorPageSize(size);
+        AppointmentCursor cursor = AppointmentCursor.decode(after);
+
+        Limit limit = Limit.of(size + 1);
+        List<UUID> ids = cursor == null
+                ? appointmentRepository.findFirstPageIdsByDoctor(doctorId, limit)
+                : appointmentRepository.findPageIdsByDoctorAfter(doctorId, cursor.appointmentTime(), cursor.id(), limit);
+
+        return toCursorPage(ids, size);
+    }
+
+    private void validateCursorPageSize(int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE + ".");
+        }
+    }
+
+    private CursorPageDTO<AppointmentResponseDTO> toCursorPage(List<UUID> ids, int size) {
+        boolean hasNext = ids.size() > size;
+        List<UUID> pageIds = hasNext ? ids.subList(0, size) : ids;
+        List<AppointmentResponseDTO> appointments = findAllInOrder(pageIds);
+
+        CursorPageDTO<AppointmentResponseDTO> page = new CursorPageDTO<>();
+        page.setContent(appointments);
+        page.setSize(size);
+        page.setHasNext(hasNext);
+        if (hasNext && !appointments.isEmpty()) {
+            AppointmentResponseDTO last = appointments.get(appointments.size() - 1);
+            page.setNextCursor(new AppointmentCursor(last.getAppointmentTime(), last.getId()).encode());
+        }
+        return page;
+    }
+
+
+    @Transactional(readOnly = true)
+    @Override
+    public void exportAppointments(Consumer<AppointmentResponseDTO> consumer) {
+        // Rows of one appointment are adjacent, so each appointment is complete when the ID changes
+        try (Stream<AppointmentRow> rows = appointmentRepository.streamAllRows()) {
+            AppointmentResponseDTO current = null;
+            Iterator<AppointmentRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                AppointmentRow row = iterator.next();
+                if (current == null || !current.getId().equals(row.id())) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = mapRowToResponseDTO(row);
+                }
+                addDoctor(current, row);
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
     }
 
 }
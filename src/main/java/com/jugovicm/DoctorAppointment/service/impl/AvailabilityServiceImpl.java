@@ -0,0 +1,134 @@
+package com.jugovicm.DoctorAppointment.service.impl;
+
+import com.jugovicm.DoctorAppointment.dto.AvailabilityDTO;
+import com.jugovicm.DoctorAppointment.dto.AvailableSlotDTO;
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
+import com.jugovicm.DoctorAppointment.schedule.DoctorScheduleIndex;
+import com.jugovicm.DoctorAppointment.service.AvailabilityService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Answers availability from the in-memory doctor schedule index, one day at a time.
+ *
+ * <p>For each day the working hours are cut into slots and every doctor's booked intervals are
+ * marked in a busy bitset. A slot is free for all doctors when it is clear in every busy set, so
+ * joint availability is the AND of the doctors' free bits. The search stops at the first day that
+ * completes the requested number of slots.</p>
+ *
+ * <p>Slots that start before now are never offered: the index drops bookings once they have ended.</p>
+ */
+@Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
+public class AvailabilityServiceImpl implements AvailabilityService {
+
+    private static final int MAX_SLOTS = 100;
+    private static final int MIN_SLOT_MINUTES = 5;
+    private static final int MAX_DOCTORS = 10;
+    private static final Duration MAX_WINDOW = Duration.ofDays(31);
+
+    private final DoctorRepository doctorRepository;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final LocalTime workdayStart;
+    private final LocalTime workdayEnd;
+
+    @Autowired
+    public AvailabilityServiceImpl(DoctorRepository doctorRepository, DoctorScheduleIndex doctorScheduleIndex,
+                                   @Value("${availability.workday.start:08:00}") LocalTime workdayStart,
+                                   @Value("${availability.workday.end:20:00}") LocalTime workdayEnd) {
+        this.doctorRepository = doctorRepository;
+        this.doctorScheduleIndex = doctorScheduleIndex;
+        this.workdayStart = workdayStart;
+        this.workdayEnd = workdayEnd;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public AvailabilityDTO findFreeSlots(List<UUID> doctorIds, LocalDateTime from, LocalDateTime to, int slotMinutes, int limit) {
+        List<UUID> doctors = doctorIds == null ? List.of() : doctorIds.stream().distinct().toList();
+        validate(doctors, from, to, slotMinutes, limit);
+        for (UUID doctorId : doctors) {
+            // findById goes through the second-level cache
+            if (doctorRepository.findById(doctorId).isEmpty()) {
+                throw new EntityNotFoundException("Doctor with ID " + doctorId + " not found");
+            }
+        }
+
+        long windowStart = Math.max(DoctorScheduleIndex.toMinutes(from), DoctorScheduleIndex.toMinutes(LocalDateTime.now()));
+        long windowEnd = DoctorScheduleIndex.toMinutes(to);
+        int slotsPerDay = (workdayEnd.toSecondOfDay() - workdayStart.toSecondOfDay()) / 60 / slotMinutes;
+
+        List<AvailableSlotDTO> slots = new ArrayList<>();
+        BitSet free = new BitSet(slotsPerDay);
+        BitSet busy = new BitSet(slotsPerDay);
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()) && slots.size() < limit; day = day.plusDays(1)) {
+            long dayStart = DoctorScheduleIndex.toMinutes(day.atTime(workdayStart));
+            long dayEnd = dayStart + (long) slotsPerDay * slotMinutes;
+
+            // Slots of the day that lie completely inside the requested window
+            int first = (int) Math.max(0, Math.ceilDiv(windowStart - dayStart, slotMinutes));
+            int last = (int) Math.min(slotsPerDay, Math.floorDiv(windowEnd - dayStart, slotMinutes));
+            if (first >= last) {
+                continue;
+            }
+            free.clear();
+            free.set(first, last);
+
+            for (UUID doctorId : doctors) {
+                busy.clear();
+                doctorScheduleIndex.forEachBusy(doctorId, dayStart, dayEnd, (busyStart, busyEnd) -> busy.set(
+                        (int) Math.max(0, Math.floorDiv(busyStart - dayStart, slotMinutes)),
+                        (int) Math.min(slotsPerDay, Math.ceilDiv(busyEnd - dayStart, slotMinutes))));
+                free.andNot(busy);
+                if (free.isEmpty()) {
+                    break;
+                }
+            }
+
+            for (int slot = free.nextSetBit(0); slot >= 0 && slots.size() < limit; slot = free.nextSetBit(slot + 1)) {
+                long slotStart = dayStart + (long) slot * slotMinutes;
+                slots.add(new AvailableSlotDTO(DoctorScheduleIndex.toDateTime(slotStart),
+                        DoctorScheduleIndex.toDateTime(slotStart + slotMinutes)));
+            }
+        }
+
+        AvailabilityDTO availability = new AvailabilityDTO();
+        availability.setDoctorIds(doctors);
+        availability.setSlotMinutes(slotMinutes);
+        availability.setSlots(slots);
+        return availability;
+    }
+
+    private void validate(List<UUID> doctors, LocalDateTime from, LocalDateTime to, int slotMinutes, int limit) {
+        if (doctors.isEmpty() || doctors.size() > MAX_DOCTORS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_DOCTORS + " doctor IDs are required.");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'.");
+        }
+        if (Duration.between(from, to).compareTo(MAX_WINDOW) > 0) {
+            throw new IllegalArgumentException("The search window must not exceed " + MAX_WINDOW.toDays() + " days.");
+        }
+        if (slotMinutes < MIN_SLOT_MINUTES || slotMinutes > Appointment.MAX_DURATION_MINUTES) {
+            throw new IllegalArgumentException("Slot length must be between " + MIN_SLOT_MINUTES + " and "
+                    + Appointment.MAX_DURATION_MINUTES + " minutes.");
+        }
+        if (limit < 1 || limit > MAX_SLOTS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SLOTS + ".");
+        }
+    }
+}
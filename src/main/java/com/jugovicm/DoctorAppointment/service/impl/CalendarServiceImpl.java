@@ -0,0 +1,126 @@
+package com.jugovicm.DoctorAppointment.service.impl;
+
+import com.jugovicm.DoctorAppointment.dto.AgendaDayDTO;
+import com.jugovicm.DoctorAppointment.dto.AgendaEntryDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarRow;
+import com.jugovicm.DoctorAppointment.dto.CalendarView;
+import com.jugovicm.DoctorAppointment.dto.DoctorAgendaDTO;
+import com.jugovicm.DoctorAppointment.model.Appointment;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.model.Doctor;
+import com.jugovicm.DoctorAppointment.repository.AppointmentRepository;
+import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
+import com.jugovicm.DoctorAppointment.service.CalendarService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Day and week agendas of several doctors, grouped in one pass over a single range query.
+ *
+ * <p>The query reads only the columns an agenda shows, one row per doctor and appointment, for
+ * appointments starting up to {@link Appointment#MAX_DURATION_MINUTES} before the view: those
+ * are the only earlier ones that can still reach into it.</p>
+ */
+@Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
+public class CalendarServiceImpl implements CalendarService {
+
+    private static final int MAX_DOCTORS = 50;
+
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorRepository doctorRepository;
+
+    @Autowired
+    public CalendarServiceImpl(AppointmentRepository appointmentRepository, DoctorRepository doctorRepository) {
+        this.appointmentRepository = appointmentRepository;
+        this.doctorRepository = doctorRepository;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public CalendarDTO getCalendar(List<UUID> doctorIds, LocalDate date, CalendarView view, AppointmentStatus status) {
+        List<UUID> doctors = doctorIds == null ? List.of() : doctorIds.stream().distinct().toList();
+        if (doctors.isEmpty() || doctors.size() > MAX_DOCTORS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_DOCTORS + " doctor IDs are required.");
+        }
+        Map<UUID, Doctor> doctorsById = doctorRepository.findAllById(doctors).stream()
+                .collect(Collectors.toMap(Doctor::getId, Function.identity()));
+        for (UUID doctorId : doctors) {
+            if (!doctorsById.containsKey(doctorId)) {
+                throw new EntityNotFoundException("Doctor with ID " + doctorId + " not found");
+            }
+        }
+
+        LocalDate first = view == CalendarView.WEEK ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : date;
+        int days = view == CalendarView.WEEK ? 7 : 1;
+        LocalDateTime from = first.atStartOfDay();
+        LocalDateTime to = first.plusDays(days).atStartOfDay();
+
+        // Doctor -> one list per day of the view
+        Map<UUID, List<List<AgendaEntryDTO>>> agendas = new HashMap<>();
+        for (UUID doctorId : doctors) {
+            List<List<AgendaEntryDTO>> perDay = new ArrayList<>(days);
+            for (int day = 0; day < days; day++) {
+                perDay.add(new ArrayList<>());
+            }
+            agendas.put(doctorId, perDay);
+        }
+
+        List<CalendarRow> rows = appointmentRepository.findCalendarRows(doctors,
+                from.minusMinutes(Appointment.MAX_DURATION_MINUTES), to, AppointmentServiceImpl.statuses(status));
+        for (CalendarRow row : rows) {
+            LocalDateTime start = row.appointmentTime();
+            LocalDateTime end = start.plusMinutes(row.durationMinutes());
+            if (!end.isAfter(from)) {
+                continue; // Ended before the view
+            }
+            AgendaEntryDTO entry = new AgendaEntryDTO(row.id(), start, end, row.status(), row.patientId(),
+                    row.patientFirstName() + " " + row.patientLastName());
+
+            // Every day of the view the appointment overlaps
+            List<List<AgendaEntryDTO>> perDay = agendas.get(row.doctorId());
+            int firstDay = (int) Math.max(0, ChronoUnit.DAYS.between(first, start.toLocalDate()));
+            int lastDay = (int) Math.min(days - 1, ChronoUnit.DAYS.between(first, end.minusNanos(1).toLocalDate()));
+            for (int day = firstDay; day <= lastDay; day++) {
+                perDay.get(day).add(entry);
+            }
+        }
+
+        CalendarDTO calendar = new CalendarDTO();
+        calendar.setView(view);
+        calendar.setFrom(first);
+        calendar.setTo(first.plusDays(days - 1));
+        calendar.setDoctors(doctors.stream().map(doctorId -> {
+            Doctor doctor = doctorsById.get(doctorId);
+            DoctorAgendaDTO agenda = new DoctorAgendaDTO();
+            agenda.setDoctorId(doctorId);
+            agenda.setFirstName(doctor.getFirstName());
+            agenda.setLastName(doctor.getLastName());
+            List<List<AgendaEntryDTO>> perDay = agendas.get(doctorId);
+            List<AgendaDayDTO> agendaDays = new ArrayList<>(days);
+            for (int day = 0; day < days; day++) {
+                agendaDays.add(new AgendaDayDTO(first.plusDays(day), perDay.get(day)));
+            }
+            agenda.setDays(agendaDays);
+            return agenda;
+        }).toList());
+        return calendar;
+    }
+}
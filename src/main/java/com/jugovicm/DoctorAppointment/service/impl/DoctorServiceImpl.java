@@ -4,27 +4,39 @@ import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
 import com.jugovicm.DoctorAppointment.model.Doctor;
 import com.jugovicm.DoctorAppointment.repository.DoctorRepository;
 import com.jugovicm.DoctorAppointment.service.DoctorService;
+import com.jugovicm.DoctorAppointment.util.SearchText;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
 public class DoctorServiceImpl implements DoctorService {
 
     private static final Logger log = LoggerFactory.getLogger(DoctorServiceImpl.class);
 
+    private static final int MAX_SEARCH_RESULTS = 100;
+
     private final DoctorRepository doctorRepository;
+    private final Duration inactiveMinAge;
 
     @Autowired
-    public DoctorServiceImpl(DoctorRepository doctorRepository) {
+    public DoctorServiceImpl(DoctorRepository doctorRepository,
+                             @Value("${inactive.min-age:30d}") Duration inactiveMinAge) {
         this.doctorRepository = doctorRepository;
+        this.inactiveMinAge = inactiveMinAge;
     }
 
     @Override
@@ -45,6 +57,7 @@ public class DoctorServiceImpl implements DoctorService {
         return mapToDTO(savedDoctor);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public DoctorDTO getDoctorById(UUID id) {
         Doctor doctor = doctorRepository.findById(id)
@@ -56,6 +69,7 @@ public class DoctorServiceImpl implements DoctorService {
         return mapToDTO(doctor);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<DoctorDTO> getAllDoctors() {
         List<Doctor> doctors = doctorRepository.findAll();
@@ -70,7 +84,7 @@ public class DoctorServiceImpl implements DoctorService {
                 .orElseThrow(() -> new EntityNotFoundException("Doctor not found with ID: " + id));
 
         // Proveravamo da li doktor ima zakazane termine
-        if (!doctor.getAppointments().isEmpty()) {
+        if (doctorRepository.hasAppointments(id)) {
             throw new IllegalStateException("Cannot delete doctor with existing appointments.");
         }
 
@@ -78,6 +92,14 @@ public class DoctorServiceImpl implements DoctorService {
         log.info("Doctor deleted successfully with ID: {}", id);
     }
 
+    @Transactional
+    @Override
+    public int deleteInactiveDoctors() {
+        int deleted = doctorRepository.deleteAllWithoutAppointments(inactiveMinAge.toSeconds());
+        log.info("Deleted {} doctors without appointments.", deleted);
+        return deleted;
+    }
+
     /*
     // Delete all doctor's appointments, and after that delete doctor
     @Transactional
@@ -122,9 +144,17 @@ public class DoctorServiceImpl implements DoctorService {
         return mapToDTO(updatedDoctor);
     }
 
+    @Transactional(readOnly = true)
     @Override
-    public List<DoctorDTO> searchDoctors(String searchTerm) {
-        List<Doctor> doctors = doctorRepository.searchDoctors(searchTerm);
+    public List<DoctorDTO> searchDoctors(String searchTerm, Pageable pageable) {
+        if (pageable.getPageSize() > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("Search page size must not exceed " + MAX_SEARCH_RESULTS + ".");
+        }
+        String term = SearchText.normalize(searchTerm);
+        // Relevance order is part of the query, so any requested sort is dropped
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+
+        List<Doctor> doctors = doctorRepository.searchDoctors(term, SearchText.escapeLike(term), page);
         return doctors.stream().map(this::mapToDTO).collect(Collectors.toList());
     }
 
@@ -0,0 +1,241 @@
+package com.jugovicm.DoctorAppointment.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.dto.PatientImportResultDTO;
+import com.jugovicm.DoctorAppointment.dto.RejectedRowDTO;
+import com.jugovicm.DoctorAppointment.search.PatientNameIndex;
+import com.jugovicm.DoctorAppointment.service.PatientImportService;
+import com.jugovicm.DoctorAppointment.util.TransactionHooks;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Streams an uploaded file line by line and writes valid patients with PostgreSQL {@code COPY}.
+ *
+ * <p>Only one chunk of parsed rows and the first {@value #MAX_REPORTED_REJECTIONS} rejections are
+ * kept in memory, so heap use does not depend on the size of the file. Each chunk is copied and
+ * committed in its own transaction and then added to the patient name index.</p>
+ */
+@Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
+public class PatientImportServiceImpl implements PatientImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientImportServiceImpl.class);
+
+    private static final int CHUNK_SIZE = 5_000;
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final List<String> CSV_COLUMNS = List.of("firstname", "lastname", "middlename", "dateofbirth");
+    private static final String COPY_SQL =
+            "COPY patient (id, first_name, last_name, middle_name, date_of_birth) FROM STDIN WITH (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectReader patientReader;
+    private final PatientNameIndex patientNameIndex;
+
+    @Autowired
+    public PatientImportServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    Validator validator, ObjectMapper objectMapper, PatientNameIndex patientNameIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.patientReader = objectMapper.readerFor(PatientDTO.class);
+        this.patientNameIndex = patientNameIndex;
+    }
+
+    @Override
+    public PatientImportResultDTO importPatients(InputStream input, Format format) throws IOException {
+        long started = System.nanoTime();
+        PatientImportResultDTO result = new PatientImportResultDTO();
+        result.setRejectedRows(new ArrayList<>());
+        List<PatientDTO> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        int[] columns = null; // CSV column positions of firstName, lastName, middleName, dateOfBirth
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = readCsvHeader(line);
+                continue;
+            }
+            try {
+                PatientDTO patient = format == Format.CSV ? parseCsvRow(line, columns) : parseJsonRow(line);
+                validate(patient);
+                patient.setId(UUID.randomUUID());
+                chunk.add(patient);
+            } catch (IllegalArgumentException e) {
+                reject(result, lineNumber, e.getMessage());
+                continue;
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                copy(chunk);
+                result.setImported(result.getImported() + chunk.size());
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            copy(chunk);
+            result.setImported(result.getImported() + chunk.size());
+        }
+
+        log.info("Imported {} patients ({} rows rejected) in {} ms.",
+                result.getImported(), result.getRejected(), (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Writes one chunk with {@code COPY} in its own transaction. Names are validated to letters only
+     * and dates are ISO, so the CSV rows need no quoting.
+     */
+    private void copy(List<PatientDTO> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+                try {
+                    for (PatientDTO patient : chunk) {
+                        byte[] row = (patient.getId() + "," + patient.getFirstName() + "," + patient.getLastName() + ","
+                                + patient.getMiddleName() + "," + patient.getDateOfBirth() + "\n")
+                                .getBytes(StandardCharsets.UTF_8);
+                        copyIn.writeToCopy(row, 0, row.length);
+                    }
+                    return copyIn.endCopy();
+                } finally {
+                    if (copyIn.isActive()) {
+                        copyIn.cancelCopy();
+                    }
+                }
+            });
+            List<PatientDTO> imported = List.copyOf(chunk);
+            TransactionHooks.afterCommit(() -> patientNameIndex.putAll(imported));
+        });
+    }
+
+    private int[] readCsvHeader(String line) {
+        List<String> header = parseCsvFields(line).stream()
+                .map(name -> name.trim().replace("_", "").toLowerCase(Locale.ROOT))
+                .toList();
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = header.indexOf(CSV_COLUMNS.get(i));
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("CSV header must contain the columns firstName, lastName, middleName and dateOfBirth.");
+            }
+        }
+        return columns;
+    }
+
+    private PatientDTO parseCsvRow(String line, int[] columns) {
+        List<String> fields = parseCsvFields(line);
+        for (int column : columns) {
+            if (column >= fields.size()) {
+                throw new IllegalArgumentException("Expected at least " + (column + 1) + " columns, found " + fields.size() + ".");
+            }
+        }
+        PatientDTO patient = new PatientDTO();
+        patient.setFirstName(fields.get(columns[0]).trim());
+        patient.setLastName(fields.get(columns[1]).trim());
+        patient.setMiddleName(fields.get(columns[2]).trim());
+        String dateOfBirth = fields.get(columns[3]).trim();
+        try {
+            patient.setDateOfBirth(dateOfBirth.isEmpty() ? null : LocalDate.parse(dateOfBirth));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("dateOfBirth: Invalid date format. Please use 'yyyy-MM-dd'.");
+        }
+        return patient;
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with "" as an escaped quote.
+     */
+    private static List<String> parseCsvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private PatientDTO parseJsonRow(String line) {
+        try {
+            return patientReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private void validate(PatientDTO patient) {
+        Set<ConstraintViolation<PatientDTO>> violations = validator.validate(patient);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private static void reject(PatientImportResultDTO result, long lineNumber, String error) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejectedRows().size() < MAX_REPORTED_REJECTIONS) {
+            result.getRejectedRows().add(new RejectedRowDTO(lineNumber, error));
+        } else {
+            result.setRejectedRowsTruncated(true);
+        }
+    }
+}
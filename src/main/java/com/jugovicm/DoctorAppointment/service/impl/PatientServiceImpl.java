@@ -4,30 +4,43 @@ import com.jugovicm.DoctorAppointment.dto.PatientDTO;
 import com.jugovicm.DoctorAppointment.model.Appointment;
 import com.jugovicm.DoctorAppointment.model.Patient;
 import com.jugovicm.DoctorAppointment.repository.PatientRepository;
+import com.jugovicm.DoctorAppointment.search.PatientNameIndex;
 import com.jugovicm.DoctorAppointment.service.PatientService;
+import com.jugovicm.DoctorAppointment.util.TransactionHooks;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "service.method", description = "Service method execution time", histogram = true)
 public class PatientServiceImpl implements PatientService {
 
     private static final Logger log = LoggerFactory.getLogger(PatientServiceImpl.class);
 
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     private final PatientRepository patientRepository;
+    private final PatientNameIndex patientNameIndex;
+    private final Duration inactiveMinAge;
 
     @Autowired
-    public PatientServiceImpl(PatientRepository patientRepository) {
+    public PatientServiceImpl(PatientRepository patientRepository, PatientNameIndex patientNameIndex,
+                              @Value("${inactive.min-age:30d}") Duration inactiveMinAge) {
         this.patientRepository = patientRepository;
+        this.patientNameIndex = patientNameIndex;
+        this.inactiveMinAge = inactiveMinAge;
     }
 
     @Override
@@ -41,9 +54,12 @@ public class PatientServiceImpl implements PatientService {
         Patient savedPatient = patientRepository.save(patient);
         log.info("Patient created successfully with ID: {}", savedPatient.getId());
 
-        return mapToDTO(savedPatient);
+        PatientDTO created = mapToDTO(savedPatient);
+        TransactionHooks.afterCommit(() -> patientNameIndex.put(created));
+        return created;
     }
 
+    @Transactional(readOnly = true)
     @Override
     public PatientDTO getPatientById(UUID id) {
         Patient patient = patientRepository.findById(id)
@@ -55,6 +71,7 @@ public class PatientServiceImpl implements PatientService {
         return mapToDTO(patient);
     }
 
+    @Transactional(readOnly = true)
     @Override
     public List<PatientDTO> getAllPatients() {
         List<Patient> patients = patientRepository.findAll();
@@ -68,12 +85,27 @@ public class PatientServiceImpl implements PatientService {
                 .orElseThrow(() -> new EntityNotFoundException("Patient not found with ID: " + id));
 
         // Proveravamo da li pacijent ima zakazane termine
-        if (!patient.getAppointments().isEmpty()) {
+        if (patientRepository.hasAppointments(id)) {
             throw new IllegalStateException("Cannot delete patient with existing appointments.");
         }
 
         patientRepository.delete(patient);
         log.info("Patient deleted successfully with ID: {}", id);
+        TransactionHooks.afterCommit(() -> patientNameIndex.remove(id));
+    }
+
+    @Transactional
+    @Override
+    public int deleteInactivePatients() {
+        List<UUID> deleted = patientRepository.lockAllWithoutAppointments(inactiveMinAge.toSeconds());
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+        patientRepository.deleteAllByIds(deleted.toArray(UUID[]::new));
+        log.info("Deleted {} patients without appointments.", deleted.size());
+
+        TransactionHooks.afterCommit(() -> patientNameIndex.removeAll(deleted));
+        return deleted.size();
     }
 
     //Delete patient from all appointments
@@ -98,8 +130,15 @@ public class PatientServiceImpl implements PatientService {
         log.info("Patient deleted successfully with ID: {}", id);
     }
     */
+    @Transactional(readOnly = true)
     @Override
     public List<PatientDTO> searchPatients(String searchTerm) {
+        if (patientNameIndex.isReady()) {
+            return patientNameIndex.search(searchTerm, MAX_SEARCH_RESULTS);
+        }
+
+        // Index is still being built after startup
+        log.debug("Patient name index is cold, searching in the database.");
         List<Patient> patients = patientRepository.searchPatients(searchTerm.toLowerCase());
 
         return patients.stream().map(this::mapToDTO).collect(Collectors.toList());
@@ -129,9 +168,12 @@ public class PatientServiceImpl implements PatientService {
         Patient updatedPatient = patientRepository.save(patient);
         log.info("Patient updated successfully with ID: {}", updatedPatient.getId());
 
-        return mapToDTO(updatedPatient);
+        PatientDTO updated = mapToDTO(updatedPatient);
+        TransactionHooks.afterCommit(() -> patientNameIndex.put(updated));
+        return updated;
     }
 
+    @Transactional(readOnly = true)
     @Override
     public Page<PatientDTO> getAllPatients(Pageable pageable) {
         return patientRepository.findAll(pageable)
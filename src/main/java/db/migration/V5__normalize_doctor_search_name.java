@@ -0,0 +1,46 @@
+package db.migration;
+
+import com.jugovicm.DoctorAppointment.util.SearchText;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Recomputes doctor.search_name with {@link SearchText#normalize}, as {@code Doctor} does on every save.
+ * The SQL backfill in V1 only lower-cased the names and kept diacritics ("đorđević"), so doctors not
+ * saved since never matched a normalized search term ("dordevic").
+ */
+public class V5__normalize_doctor_search_name extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement select = connection.createStatement();
+             ResultSet doctors = select.executeQuery("SELECT id, first_name, last_name, search_name FROM doctor");
+             PreparedStatement update = connection.prepareStatement("UPDATE doctor SET search_name = ? WHERE id = ?")) {
+            int pending = 0;
+            while (doctors.next()) {
+                String searchName = SearchText.normalize(doctors.getString("first_name") + " " + doctors.getString("last_name"));
+                if (searchName.equals(doctors.getString("search_name"))) {
+                    continue;
+                }
+                update.setString(1, searchName);
+                update.setObject(2, doctors.getObject("id"));
+                update.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+    }
+}
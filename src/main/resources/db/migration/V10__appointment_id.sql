@@ -0,0 +1,61 @@
+-- Non-partitioned index of appointment IDs and their start time. A lookup by ID alone has to probe every
+-- partition of appointment; reading the start time here first lets it prune to the one partition that holds the row.
+-- It also makes appointment IDs unique again and gives doctor_appointments back a foreign key target (see V3).
+-- Triggers keep it in step with appointment, in the same transaction.
+
+CREATE TABLE appointment_id (
+    id               uuid         NOT NULL PRIMARY KEY,
+    appointment_time timestamp(6) NOT NULL
+);
+
+INSERT INTO appointment_id (id, appointment_time) SELECT id, appointment_time FROM appointment;
+
+-- A reschedule into another month moves the row between partitions: that fires BEFORE UPDATE on the old
+-- partition, then DELETE and INSERT, so the time is updated here and the DELETE and INSERT below leave the row alone.
+CREATE FUNCTION appointment_id_moved() RETURNS trigger AS $$
+BEGIN
+    UPDATE appointment_id SET appointment_time = NEW.appointment_time WHERE id = OLD.id;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION appointment_id_inserted() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO appointment_id (id, appointment_time) VALUES (NEW.id, NEW.appointment_time)
+    ON CONFLICT (id) DO NOTHING;
+    IF NOT FOUND AND NOT EXISTS (
+            SELECT 1 FROM appointment_id WHERE id = NEW.id AND appointment_time = NEW.appointment_time) THEN
+        RAISE unique_violation USING MESSAGE = format('Appointment %s already exists.', NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION appointment_id_deleted() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM appointment_id WHERE id = OLD.id AND appointment_time = OLD.appointment_time;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Cloned to every partition, including those attached later. A detached partition loses them: the archiver
+-- removes the IDs of the rows it moves itself.
+CREATE TRIGGER appointment_id_update
+    BEFORE UPDATE ON appointment
+    FOR EACH ROW
+    WHEN (OLD.appointment_time IS DISTINCT FROM NEW.appointment_time)
+    EXECUTE FUNCTION appointment_id_moved();
+
+CREATE TRIGGER appointment_id_insert
+    AFTER INSERT ON appointment
+    FOR EACH ROW EXECUTE FUNCTION appointment_id_inserted();
+
+CREATE TRIGGER appointment_id_delete
+    AFTER DELETE ON appointment
+    FOR EACH ROW EXECUTE FUNCTION appointment_id_deleted();
+
+-- Join rows left behind while there was no foreign key point at no appointment
+DELETE FROM doctor_appointments da WHERE NOT EXISTS (SELECT 1 FROM appointment_id k WHERE k.id = da.appointment_id);
+
+ALTER TABLE doctor_appointments
+    ADD CONSTRAINT fk_doctor_appointments_appointment FOREIGN KEY (appointment_id) REFERENCES appointment_id (id);
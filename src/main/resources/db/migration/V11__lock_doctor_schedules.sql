@@ -0,0 +1,21 @@
+-- Serializes the double-booking check per doctor across application instances. A write that books a doctor
+-- takes the doctor's advisory lock before it writes anything, then checks for overlapping appointments; the
+-- lock is held until the transaction ends, so the next booking of that doctor sees the committed result.
+-- Locks are taken in ascending key order, so bookings that share several doctors queue instead of deadlocking,
+-- also when two doctors map to the same key.
+
+CREATE FUNCTION lock_doctor_schedules(doctor_ids uuid[]) RETURNS integer AS $$
+DECLARE
+    lock_key bigint;
+    locked   integer := 0;
+BEGIN
+    FOR lock_key IN
+        SELECT DISTINCT hashtextextended(doctor_id::text, 0) FROM unnest(doctor_ids) AS doctor_id
+        WHERE doctor_id IS NOT NULL ORDER BY 1
+    LOOP
+        PERFORM pg_advisory_xact_lock(lock_key);
+        locked := locked + 1;
+    END LOOP;
+    RETURN locked;
+END;
+$$ LANGUAGE plpgsql;
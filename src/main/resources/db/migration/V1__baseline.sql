@@ -0,0 +1,69 @@
+-- Baseline: the schema Hibernate used to create with ddl-auto=update, plus the indexes of the former indexes.sql.
+-- Every statement only adds what is missing, so this also runs on databases created by ddl-auto
+-- (they are baselined at version 0, see spring.flyway.baseline-version).
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE TABLE IF NOT EXISTS patient (
+    id            uuid         NOT NULL PRIMARY KEY,
+    first_name    varchar(255) NOT NULL,
+    last_name     varchar(255) NOT NULL,
+    middle_name   varchar(255) NOT NULL,
+    date_of_birth date         NOT NULL,
+    version       bigint       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS doctor (
+    id          uuid         NOT NULL PRIMARY KEY,
+    username    varchar(255) NOT NULL UNIQUE,
+    first_name  varchar(255) NOT NULL,
+    last_name   varchar(255) NOT NULL,
+    search_name varchar(255),
+    version     bigint       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS appointment (
+    id               uuid         NOT NULL PRIMARY KEY,
+    patient_id       uuid         NOT NULL CONSTRAINT fk4apif2ewfyf14077ichee8g06 REFERENCES patient,
+    appointment_time timestamp(6) NOT NULL,
+    duration_minutes integer      NOT NULL DEFAULT 30,
+    status           varchar(255) NOT NULL CHECK (status IN ('SCHEDULED', 'CANCELLED')),
+    created_by       varchar(255) NOT NULL,
+    version          bigint       NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS doctor_appointments (
+    appointment_id uuid NOT NULL CONSTRAINT fk2kaiawidtr7udo4amitfmnkkh REFERENCES appointment,
+    doctor_id      uuid NOT NULL CONSTRAINT fk5u1cmc7duuj14hdmhei33ger9 REFERENCES doctor
+);
+
+-- Columns added after the first release, missing in older ddl-auto databases
+ALTER TABLE appointment ADD COLUMN IF NOT EXISTS duration_minutes integer NOT NULL DEFAULT 30;
+ALTER TABLE appointment ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE doctor ADD COLUMN IF NOT EXISTS search_name varchar(255);
+ALTER TABLE doctor ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+UPDATE doctor SET search_name = lower(first_name || ' ' || last_name) WHERE search_name IS NULL;
+
+-- Indeksiranje za bržu pretragu pacijenata
+CREATE INDEX IF NOT EXISTS idx_patient_lastname ON patient (last_name);
+CREATE INDEX IF NOT EXISTS idx_patient_firstname ON patient (first_name);
+
+-- Indeksiranje termina po vremenu zakazivanja
+CREATE INDEX IF NOT EXISTS idx_appointment_time ON appointment (appointment_time);
+
+-- Indeksiranje sastanaka prema doktorima
+CREATE INDEX IF NOT EXISTS idx_appointment_doctor ON doctor_appointments (doctor_id);
+
+-- Indeksiranje sastanaka prema pacijentima
+CREATE INDEX IF NOT EXISTS idx_appointment_patient ON appointment (patient_id);
+
+-- Indeksiranje prema korisniku koji je kreirao termin
+CREATE INDEX IF NOT EXISTS idx_appointment_created_by ON appointment (created_by);
+
+-- Keyset (cursor) paginacija po (appointment_time, id)
+CREATE INDEX IF NOT EXISTS idx_appointment_time_id ON appointment (appointment_time, id);
+
+-- Fuzzy pretraga doktora (pg_trgm): normalizovano ime i korisnicko ime
+CREATE INDEX IF NOT EXISTS idx_doctor_search_name_trgm ON doctor USING gin (search_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_doctor_username_trgm ON doctor USING gin (lower(username) gin_trgm_ops);
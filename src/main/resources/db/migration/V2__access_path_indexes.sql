@@ -0,0 +1,19 @@
+-- Composite indexes for the real access paths. CONCURRENTLY builds them without blocking writes, so
+-- this can be applied to a live database; it cannot run in a transaction (see the .conf file).
+-- A failed build leaves an INVALID index behind: drop it and run the migration again.
+
+-- Appointments of a patient in time order (findRowsByPatientId, delete guard); replaces idx_appointment_patient
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_appointment_patient_time ON appointment (patient_id, appointment_time);
+
+-- Appointments of a doctor (listings, paging, delete guard) from the index alone; replaces idx_appointment_doctor
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_doctor_appointments_doctor ON doctor_appointments (doctor_id, appointment_id);
+
+-- Doctors of an appointment: every row query joins on it, and so does the foreign key check on appointment delete
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_doctor_appointments_appointment ON doctor_appointments (appointment_id);
+
+-- Scheduled appointments in time order (schedule index seeding)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_appointment_status_time ON appointment (status, appointment_time);
+
+-- Now prefixes of the composite indexes above
+DROP INDEX CONCURRENTLY IF EXISTS idx_appointment_patient;
+DROP INDEX CONCURRENTLY IF EXISTS idx_appointment_doctor;
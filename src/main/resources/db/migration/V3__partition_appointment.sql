@@ -0,0 +1,87 @@
+-- Monthly range partitions of appointment on appointment_time, and cold tables for archived appointments.
+-- This copies the whole table in one transaction: run it in a maintenance window.
+--
+-- A partitioned table can only have unique keys that include the partition column, so the primary key
+-- becomes (id, appointment_time) and doctor_appointments loses its foreign key to appointment. UUID keys
+-- stay unique in practice, and the application removes join rows together with their appointment.
+
+ALTER TABLE appointment RENAME TO appointment_unpartitioned;
+ALTER INDEX appointment_pkey RENAME TO appointment_unpartitioned_pkey;
+ALTER TABLE doctor_appointments DROP CONSTRAINT IF EXISTS fk2kaiawidtr7udo4amitfmnkkh;
+
+CREATE TABLE appointment (
+    id               uuid         NOT NULL,
+    patient_id       uuid         NOT NULL CONSTRAINT fk4apif2ewfyf14077ichee8g06 REFERENCES patient,
+    appointment_time timestamp(6) NOT NULL,
+    duration_minutes integer      NOT NULL DEFAULT 30,
+    status           varchar(255) NOT NULL CHECK (status IN ('SCHEDULED', 'CANCELLED')),
+    created_by       varchar(255) NOT NULL,
+    version          bigint       NOT NULL DEFAULT 0,
+    CONSTRAINT appointment_pkey PRIMARY KEY (id, appointment_time)
+) PARTITION BY RANGE (appointment_time);
+
+-- Catches appointments in months that have no partition yet (bookings far ahead)
+CREATE TABLE appointment_default PARTITION OF appointment DEFAULT;
+
+-- Creates the partition appointment_pYYYY_MM of the month that contains the given day, if it is missing.
+-- Rows of that month already in the default partition are moved into it first.
+CREATE OR REPLACE FUNCTION create_appointment_partition(month date) RETURNS void AS $$
+DECLARE
+    lower_bound timestamp := date_trunc('month', month);
+    upper_bound timestamp := date_trunc('month', month) + interval '1 month';
+    partition_name text   := 'appointment_p' || to_char(month, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE appointment INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM appointment_default WHERE appointment_time >= %L AND appointment_time < %L '
+                   'RETURNING *) INSERT INTO %I SELECT * FROM moved', lower_bound, upper_bound, partition_name);
+    EXECUTE format('ALTER TABLE appointment ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, lower_bound, upper_bound);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions from the oldest appointment to a year ahead; the archiver keeps creating them ahead of time
+DO $$
+DECLARE
+    month date := date_trunc('month', least((SELECT min(appointment_time) FROM appointment_unpartitioned), now()));
+BEGIN
+    WHILE month <= date_trunc('month', now()) + interval '12 months' LOOP
+        PERFORM create_appointment_partition(month);
+        month := month + interval '1 month';
+    END LOOP;
+END;
+$$;
+
+INSERT INTO appointment (id, patient_id, appointment_time, duration_minutes, status, created_by, version)
+SELECT id, patient_id, appointment_time, duration_minutes, status, created_by, version FROM appointment_unpartitioned;
+
+DROP TABLE appointment_unpartitioned;
+
+-- Indexes on the parent are created on every partition, including those attached later.
+-- idx_appointment_time is not recreated: it is a prefix of idx_appointment_time_id.
+CREATE INDEX idx_appointment_time_id ON appointment (appointment_time, id);
+CREATE INDEX idx_appointment_patient_time ON appointment (patient_id, appointment_time);
+CREATE INDEX idx_appointment_status_time ON appointment (status, appointment_time);
+CREATE INDEX idx_appointment_created_by ON appointment (created_by);
+
+-- Cold storage: appointments moved out of old partitions, read only by ID lookups and the delete guards
+CREATE TABLE appointment_archive (
+    id               uuid         NOT NULL PRIMARY KEY,
+    patient_id       uuid         NOT NULL REFERENCES patient,
+    appointment_time timestamp(6) NOT NULL,
+    duration_minutes integer      NOT NULL,
+    status           varchar(255) NOT NULL,
+    created_by       varchar(255) NOT NULL,
+    version          bigint       NOT NULL
+);
+
+CREATE TABLE doctor_appointments_archive (
+    appointment_id uuid NOT NULL REFERENCES appointment_archive,
+    doctor_id      uuid NOT NULL REFERENCES doctor
+);
+
+CREATE INDEX idx_appointment_archive_patient ON appointment_archive (patient_id);
+CREATE INDEX idx_doctor_appointments_archive_appointment ON doctor_appointments_archive (appointment_id);
+CREATE INDEX idx_doctor_appointments_archive_doctor ON doctor_appointments_archive (doctor_id);
@@ -0,0 +1,10 @@
+-- Appointment change events, written in the transaction of the change and drained by the outbox relay.
+-- Rows are deleted once published, so the table stays small; the ID keeps the order of the writes.
+
+CREATE TABLE appointment_outbox (
+    id             bigint       GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    appointment_id uuid         NOT NULL,
+    event_type     varchar(32)  NOT NULL CHECK (event_type IN ('CREATED', 'UPDATED', 'CANCELLED', 'DELETED')),
+    payload        jsonb        NOT NULL,
+    created_at     timestamp(6) NOT NULL DEFAULT now()
+);
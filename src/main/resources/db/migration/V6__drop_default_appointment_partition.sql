@@ -0,0 +1,39 @@
+-- Replaces the default partition of appointment with monthly partitions, because PostgreSQL refuses
+-- DETACH PARTITION ... CONCURRENTLY while a default partition exists. The archiver needs it to retire old
+-- months without an ACCESS EXCLUSIVE lock on appointment. The service now only accepts appointment times
+-- inside the window of months that have partitions (see PartitionWindow), and the archiver creates
+-- those partitions ahead of time.
+--
+-- Dropping the default partition locks appointment briefly: run it in a maintenance window.
+
+-- Every month that still has rows in the default partition gets its own partition (the old function moves them)
+DO $$
+DECLARE
+    month date;
+BEGIN
+    FOR month IN SELECT DISTINCT date_trunc('month', appointment_time)::date FROM appointment_default LOOP
+        PERFORM create_appointment_partition(month);
+    END LOOP;
+END;
+$$;
+
+DROP TABLE appointment_default;
+
+-- Creates the partition appointment_pYYYY_MM of the month that contains the given day, if it is missing.
+-- ATTACH takes only a SHARE UPDATE EXCLUSIVE lock on appointment, so reads and writes go on meanwhile.
+CREATE OR REPLACE FUNCTION create_appointment_partition(month date) RETURNS void AS $$
+DECLARE
+    lower_bound timestamp := date_trunc('month', month);
+    upper_bound timestamp := date_trunc('month', month) + interval '1 month';
+    partition_name text   := 'appointment_p' || to_char(month, 'YYYY_MM');
+BEGIN
+    -- Instances starting together would otherwise race between the check and the CREATE
+    PERFORM pg_advisory_xact_lock(hashtext('create_appointment_partition'));
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE appointment INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    EXECUTE format('ALTER TABLE appointment ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, lower_bound, upper_bound);
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,21 @@
+-- Announces every outbox event on the appointment_feed channel. PostgreSQL delivers notifications only
+-- when the transaction commits, in commit order, to every listening session, so the live feed of each
+-- application instance sees the writes of all of them.
+-- The outbox ID keeps the payloads distinct: identical notifications of one transaction are merged.
+-- Payloads are limited to 8000 bytes; a larger event is announced by its ID alone, and listeners reset their feed.
+
+CREATE OR REPLACE FUNCTION notify_appointment_feed() RETURNS trigger AS $$
+DECLARE
+    message text := json_build_object('id', NEW.id, 'event', NEW.payload)::text;
+BEGIN
+    IF octet_length(message) > 7900 THEN
+        message := json_build_object('id', NEW.id)::text;
+    END IF;
+    PERFORM pg_notify('appointment_feed', message);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER appointment_outbox_notify
+    AFTER INSERT ON appointment_outbox
+    FOR EACH ROW EXECUTE FUNCTION notify_appointment_feed();
@@ -0,0 +1,5 @@
+-- Creation time of doctors and patients, so the bulk delete of those without appointments spares new records.
+-- Rows that existed before the column get the migration time: their real age is unknown.
+
+ALTER TABLE doctor ADD COLUMN created_at timestamp(6) NOT NULL DEFAULT now();
+ALTER TABLE patient ADD COLUMN created_at timestamp(6) NOT NULL DEFAULT now();
@@ -0,0 +1,85 @@
+-- Per-doctor change counter: the ETag of a doctor's appointment list (GET /v1/appointment/doctor/{id}) is one
+-- primary key read instead of hashing the doctor's whole history.
+-- Triggers bump it in the transaction of every write that changes what the list shows: the doctor's join rows,
+-- the appointments (including partition moves and archiving), and the names of their patients and doctors.
+-- The bump locks the counter row until commit, so two changes never end with the same version.
+
+CREATE TABLE doctor_schedule_version (
+    doctor_id uuid   NOT NULL PRIMARY KEY,
+    version   bigint NOT NULL
+);
+
+-- Rows are bumped in doctor ID order, so two transactions bumping the same doctors queue instead of deadlocking
+CREATE FUNCTION bump_doctor_schedule_versions(doctor_ids uuid[]) RETURNS void AS $$
+    INSERT INTO doctor_schedule_version AS v (doctor_id, version)
+    SELECT DISTINCT doctor_id, 1 FROM unnest(doctor_ids) AS doctor_id WHERE doctor_id IS NOT NULL ORDER BY doctor_id
+    ON CONFLICT (doctor_id) DO UPDATE SET version = v.version + 1;
+$$ LANGUAGE sql;
+
+CREATE FUNCTION doctor_appointments_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM bump_doctor_schedule_versions(ARRAY[NEW.doctor_id]);
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM bump_doctor_schedule_versions(ARRAY[OLD.doctor_id]);
+    ELSE
+        PERFORM bump_doctor_schedule_versions(ARRAY[OLD.doctor_id, NEW.doctor_id]);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER doctor_appointments_schedule_version
+    AFTER INSERT OR UPDATE OR DELETE ON doctor_appointments
+    FOR EACH ROW EXECUTE FUNCTION doctor_appointments_changed();
+
+-- A reschedule into another month moves the row between partitions: that fires DELETE and INSERT, not UPDATE.
+-- A new appointment has no join rows yet; they bump the counters themselves.
+CREATE FUNCTION appointment_changed() RETURNS trigger AS $$
+DECLARE
+    changed_id uuid := CASE WHEN TG_OP = 'DELETE' THEN OLD.id ELSE NEW.id END;
+BEGIN
+    PERFORM bump_doctor_schedule_versions(ARRAY(
+        SELECT da.doctor_id FROM doctor_appointments da WHERE da.appointment_id = changed_id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Cloned to every partition, including those attached later
+CREATE TRIGGER appointment_schedule_version
+    AFTER INSERT OR UPDATE OR DELETE ON appointment
+    FOR EACH ROW EXECUTE FUNCTION appointment_changed();
+
+CREATE FUNCTION patient_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM bump_doctor_schedule_versions(ARRAY(
+        SELECT da.doctor_id FROM appointment a JOIN doctor_appointments da ON da.appointment_id = a.id
+        WHERE a.patient_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER patient_schedule_version
+    AFTER UPDATE ON patient
+    FOR EACH ROW
+    WHEN (OLD.first_name IS DISTINCT FROM NEW.first_name OR OLD.last_name IS DISTINCT FROM NEW.last_name
+          OR OLD.middle_name IS DISTINCT FROM NEW.middle_name OR OLD.date_of_birth IS DISTINCT FROM NEW.date_of_birth)
+    EXECUTE FUNCTION patient_changed();
+
+-- A doctor's name appears in the lists of every doctor sharing an appointment with them
+CREATE FUNCTION doctor_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM bump_doctor_schedule_versions(ARRAY(
+        SELECT other.doctor_id FROM doctor_appointments own
+        JOIN doctor_appointments other ON other.appointment_id = own.appointment_id
+        WHERE own.doctor_id = NEW.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER doctor_schedule_version
+    AFTER UPDATE ON doctor
+    FOR EACH ROW
+    WHEN (OLD.username IS DISTINCT FROM NEW.username OR OLD.first_name IS DISTINCT FROM NEW.first_name
+          OR OLD.last_name IS DISTINCT FROM NEW.last_name)
+    EXECUTE FUNCTION doctor_changed();
@@ -0,0 +1,381 @@
+package com.jugovicm.DoctorAppointment;
+
+import com.jugovicm.DoctorAppointment.archive.AppointmentArchiver;
+import com.jugovicm.DoctorAppointment.dto.AppointmentRequestDTO;
+import com.jugovicm.DoctorAppointment.dto.CalendarView;
+import com.jugovicm.DoctorAppointment.dto.DoctorDTO;
+import com.jugovicm.DoctorAppointment.dto.PatientDTO;
+import com.jugovicm.DoctorAppointment.model.AppointmentStatus;
+import com.jugovicm.DoctorAppointment.outbox.InMemoryOutboxSink;
+import com.jugovicm.DoctorAppointment.outbox.OutboxRelay;
+import com.jugovicm.DoctorAppointment.search.PatientNameIndex;
+import com.jugovicm.DoctorAppointment.service.AppointmentService;
+import com.jugovicm.DoctorAppointment.service.CalendarService;
+import com.jugovicm.DoctorAppointment.service.DoctorService;
+import com.jugovicm.DoctorAppointment.service.PatientService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.file.AccessDeniedException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Asserts the exact number of SQL statements and rows read by every public method of
+ * {@link AppointmentService}, {@link CalendarService}, {@link DoctorService} and {@link PatientService},
+ * and by one {@link OutboxRelay} batch.
+ *
+ * <p>Runs the application against an embedded PostgreSQL with a small fixed data set (3 doctors,
+ * 4 patients, 12 appointments with 2 doctors each) and calls each method once with the
+ * second-level cache cleared, so the counts do not depend on what ran before. A new N+1 or
+ * cartesian fetch shows up as a count that no longer matches its budget. When a change lowers
+ * a count on purpose, update the budget here.</p>
+ *
+ * <p>The tests share the data set and run in order: writes come after the reads they would change.</p>
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class QueryBudgetTest {
+
+    private static final String USERNAME = "doctor_a";
+    // Monday of next month: inside the window of months that accept appointments
+    private static final LocalDateTime FIRST_APPOINTMENT = LocalDate.now().withDayOfMonth(1).plusMonths(1)
+            .with(TemporalAdjusters.firstInMonth(DayOfWeek.MONDAY)).atTime(9, 0);
+    private static final int APPOINTMENTS = 12;
+
+    private final StatementCounter counter = new StatementCounter();
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+
+    private SessionFactory sessionFactory;
+    private AppointmentService appointmentService;
+    private CalendarService calendarService;
+    private DoctorService doctorService;
+    private PatientService patientService;
+    private PatientNameIndex patientNameIndex;
+    private AppointmentArchiver appointmentArchiver;
+    private OutboxRelay outboxRelay;
+    private InMemoryOutboxSink outboxSink;
+
+    private final List<UUID> doctors = new ArrayList<>();
+    private final List<UUID> patients = new ArrayList<>();
+    private final List<UUID> appointments = new ArrayList<>();
+
+    @BeforeAll
+    void start() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(DoctorAppointmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> {
+                    context.getBeanFactory().addBeanPostProcessor(counter.dataSourceWrapper());
+                    context.getBeanFactory().addBeanPostProcessor(coldableNameIndex());
+                })
+                // Command-line arguments, so they win over application.properties
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--logging.level.root=WARN",
+                        // Appointment change events stay in memory instead of a file in the working directory
+                        "--outbox.sink=memory",
+                        // The relay only runs when called below, so it does not add to the other counts
+                        "--outbox.relay.interval=1h",
+                        // Everything is created during the test: no minimum age, so the bulk deletes find their rows
+                        "--inactive.min-age=0s");
+
+        sessionFactory = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class);
+        appointmentService = context.getBean(AppointmentService.class);
+        calendarService = context.getBean(CalendarService.class);
+        doctorService = context.getBean(DoctorService.class);
+        patientService = context.getBean(PatientService.class);
+        patientNameIndex = context.getBean(PatientNameIndex.class);
+        appointmentArchiver = context.getBean(AppointmentArchiver.class);
+        outboxRelay = context.getBean(OutboxRelay.class);
+        outboxSink = context.getBean(InMemoryOutboxSink.class);
+
+        // The name index is built in the background at startup; seeding before it is ready would race with the rebuild
+        while (!patientNameIndex.isReady()) {
+            Thread.sleep(50);
+        }
+        seed();
+    }
+
+    @AfterAll
+    void stop() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    /**
+     * Spies on the name index, so a test can make it look cold without restarting the application.
+     */
+    private static BeanPostProcessor coldableNameIndex() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof PatientNameIndex ? Mockito.spy(bean) : bean;
+            }
+        };
+    }
+
+    private void seed() throws Exception {
+        for (String name : List.of("Ana", "Marko", "Jelena")) {
+            doctors.add(doctorService.createDoctor(doctor("doctor_" + name.toLowerCase().charAt(0), name, "Petrovic")).getId());
+        }
+        for (String name : List.of("Milan", "Ivana", "Nikola", "Mila")) {
+            patients.add(patientService.createPatient(patient(name, "Jovanovic")).getId());
+        }
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            appointments.add(appointmentService.createAppointment(appointment(i, patients.get(i % patients.size()),
+                    doctors.get(i % doctors.size()), doctors.get((i + 1) % doctors.size())), USERNAME).getId());
+        }
+    }
+
+    @Test
+    @Order(1)
+    void reads() {
+        UUID doctorId = doctors.get(0);
+        UUID patientId = patients.get(0);
+        LocalDateTime from = FIRST_APPOINTMENT;
+        LocalDateTime to = FIRST_APPOINTMENT.plusHours(6);
+
+        assertAll(
+                budget("AppointmentService.getAppointment", 1, 2,
+                        () -> appointmentService.getAppointment(appointments.get(0))),
+                budget("AppointmentService.getAppointmentETag", 1, 2,
+                        () -> appointmentService.getAppointmentETag(appointments.get(0))),
+                budget("AppointmentService.getAllAppointments()", 1, 24,
+                        () -> appointmentService.getAllAppointments()),
+                budget("AppointmentService.getAllAppointments(pageable)", 3, 16,
+                        () -> appointmentService.getAllAppointments(PageRequest.of(0, 5))),
+                budget("AppointmentService.getAllAppointments(cursor)", 2, 16,
+                        () -> appointmentService.getAllAppointments(null, 5)),
+                budget("AppointmentService.getAppointmentsByDoctor(id)", 1, 16,
+                        () -> appointmentService.getAppointmentsByDoctor(doctorId)),
+                budget("AppointmentService.getAppointmentsByDoctorETag", 1, 1,
+                        () -> appointmentService.getAppointmentsByDoctorETag(doctorId)),
+                budget("AppointmentService.getAppointmentsByDoctor(id, pageable)", 3, 16,
+                        () -> appointmentService.getAppointmentsByDoctor(doctorId, PageRequest.of(0, 5))),
+                budget("AppointmentService.getAppointmentsByDoctor(id, cursor)", 2, 16,
+                        () -> appointmentService.getAppointmentsByDoctor(doctorId, null, 5)),
+                budget("AppointmentService.getAppointmentsByPatient", 1, 6,
+                        () -> appointmentService.getAppointmentsByPatient(patientId)),
+                budget("AppointmentService.getAppointments(range)", 1, 12,
+                        () -> appointmentService.getAppointments(from, to, AppointmentStatus.SCHEDULED)),
+                budget("AppointmentService.getAppointmentsByDoctor(id, range)", 1, 8,
+                        () -> appointmentService.getAppointmentsByDoctor(doctorId, from, to, null)),
+                budget("AppointmentService.getAppointmentsByPatient(id, range)", 1, 4,
+                        () -> appointmentService.getAppointmentsByPatient(patientId, from, to, null)),
+                budget("CalendarService.getCalendar (day)", 2, 27,
+                        () -> calendarService.getCalendar(doctors, FIRST_APPOINTMENT.toLocalDate(), CalendarView.DAY, null)),
+                budget("CalendarService.getCalendar (week)", 2, 27,
+                        () -> calendarService.getCalendar(doctors, FIRST_APPOINTMENT.toLocalDate(), CalendarView.WEEK, null)),
+                budget("AppointmentService.exportAppointments", 1, 24,
+                        () -> appointmentService.exportAppointments(appointment -> { })),
+                budget("DoctorService.getDoctorById", 1, 1,
+                        () -> doctorService.getDoctorById(doctorId)),
+                budget("DoctorService.getAllDoctors", 1, 3,
+                        () -> doctorService.getAllDoctors()),
+                budget("DoctorService.searchDoctors", 1, 3,
+                        () -> doctorService.searchDoctors("petrovic", PageRequest.of(0, 20))),
+                budget("PatientService.getPatientById", 1, 1,
+                        () -> patientService.getPatientById(patientId)),
+                budget("PatientService.getAllPatients()", 1, 4,
+                        () -> patientService.getAllPatients()),
+                budget("PatientService.getAllPatients(pageable)", 2, 3,
+                        () -> patientService.getAllPatients(PageRequest.of(0, 2))),
+                budget("PatientService.searchPatients (name index)", 0, 0,
+                        () -> patientService.searchPatients("mila")),
+                budget("PatientService.searchPatients (cold name index)", 1, 2,
+                        () -> searchWithColdNameIndex("mila")));
+    }
+
+    /**
+     * Searches as right after startup, before the name index is built: the database answers.
+     */
+    private void searchWithColdNameIndex(String searchTerm) {
+        Mockito.doReturn(false).when(patientNameIndex).isReady();
+        try {
+            patientService.searchPatients(searchTerm);
+        } finally {
+            Mockito.doCallRealMethod().when(patientNameIndex).isReady();
+        }
+    }
+
+    // Writes, each on data of its own so the reads above stay valid
+
+    @Test
+    @Order(2)
+    void doctorWrites() throws Exception {
+        UUID newDoctorId = doctorService.createDoctor(doctor("doctor_z", "Zoran", "Ilic")).getId();
+        assertAll(
+                budget("DoctorService.createDoctor", 2, 0,
+                        () -> doctorService.createDoctor(doctor("doctor_y", "Dusan", "Ilic"))),
+                budget("DoctorService.updateDoctor", 2, 1,
+                        () -> doctorService.updateDoctor(newDoctorId, doctor("doctor_z", "Zoran", "Ilich"))),
+                budget("DoctorService.deleteDoctor", 3, 2,
+                        () -> doctorService.deleteDoctor(newDoctorId)),
+                budget("DoctorService.deleteDoctor (has appointments)", 2, 2,
+                        () -> assertThrows(IllegalStateException.class, () -> doctorService.deleteDoctor(doctors.get(0)))));
+    }
+
+    @Test
+    @Order(3)
+    void patientWrites() throws Exception {
+        UUID newPatientId = patientService.createPatient(patient("Petar", "Ilic")).getId();
+        assertAll(
+                budget("PatientService.createPatient", 1, 0,
+                        () -> patientService.createPatient(patient("Vesna", "Ilic"))),
+                budget("PatientService.updatePatient", 2, 1,
+                        () -> patientService.updatePatient(newPatientId, patient("Petar", "Ilich"))),
+                budget("PatientService.deletePatient", 3, 2,
+                        () -> patientService.deletePatient(newPatientId)),
+                budget("PatientService.deletePatient (has appointments)", 2, 2,
+                        () -> assertThrows(IllegalStateException.class, () -> patientService.deletePatient(patients.get(0)))));
+    }
+
+    @Test
+    @Order(4)
+    void appointmentWrites() {
+        UUID doctorId = doctors.get(0);
+        UUID patientId = patients.get(0);
+
+        // Bookings lock the doctors' schedules (one row) and query for overlaps, which the update's own row matches
+        assertAll(
+                budget("AppointmentService.createAppointment", 8, 4,
+                        () -> appointmentService.createAppointment(
+                                appointment(APPOINTMENTS, patientId, doctorId, doctors.get(1)), USERNAME)),
+                budget("AppointmentService.createAppointments (3 items)", 7, 7,
+                        () -> appointmentService.createAppointments(List.of(
+                                appointment(APPOINTMENTS + 1, patientId, doctorId, doctors.get(1)),
+                                appointment(APPOINTMENTS + 2, patients.get(1), doctorId, doctors.get(2)),
+                                appointment(APPOINTMENTS + 3, patients.get(2), doctors.get(1), doctors.get(2))), USERNAME)),
+                budget("AppointmentService.updateAppointment", 5, 5,
+                        () -> appointmentService.updateAppointment(appointments.get(1),
+                                appointment(APPOINTMENTS + 4, patients.get(1), doctors.get(1), doctors.get(2)), USERNAME, null)),
+                budget("AppointmentService.cancelAppointment", 3, 2,
+                        () -> appointmentService.cancelAppointment(appointments.get(2), USERNAME, null, true)),
+                budget("AppointmentService.cancelAppointment (no body)", 3, 2,
+                        () -> appointmentService.cancelAppointment(appointments.get(4), USERNAME, null, false)),
+                budget("AppointmentService.cancelAppointment (not owner)", 2, 1,
+                        () -> assertThrows(AccessDeniedException.class,
+                                () -> appointmentService.cancelAppointment(appointments.get(5), "doctor_m", null, false))),
+                budget("AppointmentService.deleteAppointment", 4, 2,
+                        () -> appointmentService.deleteAppointment(appointments.get(3), USERNAME)),
+                budget("AppointmentService.deleteAppointment (missing)", 4, 1,
+                        () -> assertThrows(EntityNotFoundException.class,
+                                () -> appointmentService.deleteAppointment(UUID.randomUUID(), USERNAME))));
+    }
+
+    @Test
+    @Order(5)
+    void conditionalAppointmentWrites() {
+        String cancelETag = "\"" + appointmentService.getAppointmentETag(appointments.get(6)) + "\"";
+        String updateETag = "\"" + appointmentService.getAppointmentETag(appointments.get(7)) + "\"";
+        // The entity is loaded for the version check, so the update locks the doctors it already knows
+        assertAll(
+                budget("AppointmentService.cancelAppointment (If-Match)", 4, 4,
+                        () -> appointmentService.cancelAppointment(appointments.get(6), USERNAME, cancelETag, true)),
+                budget("AppointmentService.updateAppointment (If-Match)", 5, 3,
+                        () -> appointmentService.updateAppointment(appointments.get(7),
+                                appointment(APPOINTMENTS + 5, patients.get(3), doctors.get(1), doctors.get(2)), USERNAME, updateETag)));
+    }
+
+    @Test
+    @Order(6)
+    void outboxRelay() {
+        // One event per successful write since seeding: 12 + 1 + 3 + 1 + 1 + 1 + 1 + 1 + 1, claimed and deleted in two statements
+        assertAll(
+                budget("OutboxRelay.relayBatch (22 events)", 2, 22,
+                        () -> outboxRelay.relayBatch()),
+                () -> assertEquals(22, outboxSink.messages().size(), "OutboxRelay.relayBatch published events"));
+    }
+
+    @Test
+    @Order(7)
+    void archivedReads() {
+        // The first appointment moved to the archive: lookups by ID miss the live table, then find it there
+        appointmentArchiver.archiveBefore(FIRST_APPOINTMENT.plusMinutes(1));
+        assertAll(
+                budget("AppointmentService.getAppointment (archived)", 2, 2,
+                        () -> appointmentService.getAppointment(appointments.get(0))),
+                budget("AppointmentService.getAppointmentETag (archived)", 2, 2,
+                        () -> appointmentService.getAppointmentETag(appointments.get(0))));
+    }
+
+    @Test
+    @Order(8)
+    void bulkDeletes() {
+        assertAll(
+                // Left without appointments above: doctor_y and Vesna
+                budget("DoctorService.deleteInactiveDoctors", 1, 0,
+                        () -> doctorService.deleteInactiveDoctors()),
+                // Patients are locked and then deleted by ID, which the name index needs
+                budget("PatientService.deleteInactivePatients", 2, 1,
+                        () -> patientService.deleteInactivePatients()));
+    }
+
+    /**
+     * Runs the call with an empty second-level cache and compares what it sent to the database with
+     * the budget.
+     */
+    private Executable budget(String name, long statements, long rows, Executable call) {
+        return () -> {
+            sessionFactory.getCache().evictAllRegions();
+            counter.reset();
+            call.execute();
+            assertEquals(statements + " statements, " + rows + " rows",
+                    counter.statements() + " statements, " + counter.rows() + " rows", name);
+        };
+    }
+
+    private static DoctorDTO doctor(String username, String firstName, String lastName) {
+        DoctorDTO doctor = new DoctorDTO();
+        doctor.setUsername(username);
+        doctor.setFirstName(firstName);
+        doctor.setLastName(lastName);
+        return doctor;
+    }
+
+    private static PatientDTO patient(String firstName, String lastName) {
+        return new PatientDTO(null, firstName, lastName, "Petar", LocalDate.of(1980, 5, 17));
+    }
+
+    private static AppointmentRequestDTO appointment(int slot, UUID patientId, UUID... doctorIds) {
+        AppointmentRequestDTO appointment = new AppointmentRequestDTO();
+        appointment.setAppointmentTime(FIRST_APPOINTMENT.plusHours(slot));
+        appointment.setDurationMinutes(30);
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        appointment.setPatientId(patientId);
+        appointment.setDoctorIds(List.of(doctorIds));
+        return appointment;
+    }
+}
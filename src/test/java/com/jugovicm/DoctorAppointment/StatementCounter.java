@@ -0,0 +1,109 @@
+package com.jugovicm.DoctorAppointment;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements executed and the rows read through the application's data source.
+ *
+ * <p>Every {@code execute*} call counts as one statement, so a JDBC batch is one statement however
+ * many rows it writes. Every {@link ResultSet#next()} that returns {@code true} counts as one row.
+ * Unlike Hibernate statistics this also sees native and {@code JdbcTemplate} queries.</p>
+ */
+final class StatementCounter {
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * Wraps the data source bean so that every connection handed out is counted.
+     */
+    BeanPostProcessor dataSourceWrapper() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return counting(super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return counting(super.getConnection(username, password));
+                        }
+                    };
+                }
+                return bean;
+            }
+        };
+    }
+
+    void reset() {
+        statements.set(0);
+        rows.set(0);
+    }
+
+    long statements() {
+        return statements.get();
+    }
+
+    long rows() {
+        return rows.get();
+    }
+
+    private Connection counting(Connection connection) {
+        return proxy(Connection.class, connection, (method, result) -> switch (method) {
+            case "createStatement" -> counting(Statement.class, (Statement) result);
+            case "prepareStatement" -> counting(PreparedStatement.class, (PreparedStatement) result);
+            case "prepareCall" -> counting(CallableStatement.class, (CallableStatement) result);
+            default -> result;
+        });
+    }
+
+    private <S extends Statement> S counting(Class<S> type, S statement) {
+        return proxy(type, statement, (method, result) -> {
+            if (method.startsWith("execute")) {
+                statements.incrementAndGet();
+            }
+            return result instanceof ResultSet resultSet ? counting(resultSet) : result;
+        });
+    }
+
+    private ResultSet counting(ResultSet resultSet) {
+        return proxy(ResultSet.class, resultSet, (method, result) -> {
+            if (method.equals("next") && Boolean.TRUE.equals(result)) {
+                rows.incrementAndGet();
+            }
+            return result;
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    try {
+                        return handler.handle(method.getName(), method.invoke(target, args));
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }));
+    }
+
+    @FunctionalInterface
+    private interface ResultHandler {
+        Object handle(String method, Object result);
+    }
+}